@@ -1,29 +1,100 @@
--- Run this file through MariaDB server on corredt database for initial setup
+-- The plugin creates and upgrades these tables on startup (storage/SchemaMigrator) and records
+-- the applied version in ab_schema_version. This file shows the resulting schema, for reference
+-- or for setting up a database by hand. Keep the version inserted at the end in step with the migrations.
 
 CREATE TABLE `ab_players` (
   `id`         INT AUTO_INCREMENT NOT NULL,
-  `uuid`       VARCHAR(36)        NOT NULL,
+  `uuid_bin`   BINARY(16)         NOT NULL,
+  `uuid`       VARCHAR(36),
   `username`   VARCHAR(36)        NOT NULL,
   `firstseen`  TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
   `lastseen`   TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
   `timezone`   VARCHAR(32),
-  `discord`    BIGINT             NOT NULL DEFAULT 0,
+  `reddit`     VARCHAR(32),
   `options`    INT                NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`)
 ) DEFAULT CHARSET = utf8;
-CREATE INDEX `ab_players_uuid` ON `ab_players` (`uuid`);
+CREATE UNIQUE INDEX `ab_players_uuid_bin` ON `ab_players` (`uuid_bin`);
 CREATE INDEX `ab_players_name` ON `ab_players` (`username`);
+CREATE INDEX `ab_players_lastseen` ON `ab_players` (`lastseen`);
+
+-- Discord links; keyed both ways so linking is a single REPLACE that also drops any old link
+CREATE TABLE `ab_discord` (
+  `discord`    BIGINT             NOT NULL,
+  `uuid_bin`   BINARY(16)         NOT NULL,
+  `linked`     TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`discord`)
+) DEFAULT CHARSET = utf8;
+CREATE UNIQUE INDEX `ab_discord_uuid_bin` ON `ab_discord` (`uuid_bin`);
+
+-- Names players used before their current one; filled by ab_player_join
+CREATE TABLE `ab_player_names` (
+  `uuid_bin`   BINARY(16)         NOT NULL,
+  `username`   VARCHAR(36)        NOT NULL,
+  `changed`    TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`uuid_bin`, `username`)
+) DEFAULT CHARSET = utf8;
+CREATE INDEX `ab_player_names_username` ON `ab_player_names` (`username`);
+
+-- Player login: inserts or renames the player and returns the row with the previous username ('' if new)
+-- The plugin replaces this on startup when its definition changes, and leaves out `uuid` if mariadb.uuid-compat is off.
+DELIMITER //
+CREATE PROCEDURE `ab_player_join`(IN p_uuid BINARY(16), IN p_username VARCHAR(36))
+BEGIN
+  DECLARE old_name VARCHAR(36);
+  SET old_name = (SELECT username FROM ab_players WHERE uuid_bin=p_uuid LIMIT 1);
+  IF old_name IS NULL THEN
+    INSERT INTO ab_players(uuid_bin, uuid, username) VALUES(p_uuid,
+      LOWER(CONCAT_WS('-', SUBSTR(HEX(p_uuid),1,8), SUBSTR(HEX(p_uuid),9,4), SUBSTR(HEX(p_uuid),13,4), SUBSTR(HEX(p_uuid),17,4), SUBSTR(HEX(p_uuid),21))),
+      p_username);
+    SELECT id, '' AS username, firstseen, NULL AS lastseen, timezone, 0 AS discord, reddit, options FROM ab_players WHERE id=LAST_INSERT_ID();
+  ELSE
+    IF BINARY old_name <> p_username THEN
+      UPDATE ab_players SET username=p_username WHERE uuid_bin=p_uuid;
+    END IF;
+    IF old_name <> p_username THEN
+      INSERT INTO ab_player_names(uuid_bin, username) VALUES(p_uuid, old_name) ON DUPLICATE KEY UPDATE changed=CURRENT_TIMESTAMP;
+    END IF;
+    SELECT id, old_name AS username, firstseen, lastseen, timezone, (SELECT discord FROM ab_discord WHERE uuid_bin=p_uuid) AS discord, reddit, options FROM ab_players WHERE uuid_bin=p_uuid LIMIT 1;
+  END IF;
+END //
+DELIMITER ;
 
 CREATE TABLE `ab_news` (
   `id`         INT AUTO_INCREMENT NOT NULL,
   `content`    VARCHAR(200)       NOT NULL,
   `timestamp`  TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
-  `username`   VARCHAR(36)        NOT NULL,
+  `username`   VARCHAR(36),
   `uuid`       VARCHAR(36),
   PRIMARY KEY (`id`)
 ) DEFAULT CHARSET = utf8;
 CREATE INDEX `ab_news_timestamp` ON `ab_news` (`timestamp`);
 
+CREATE TABLE `ab_reports` (
+  `id`         INT AUTO_INCREMENT NOT NULL,
+  `uuid`       VARCHAR(36)        NOT NULL,
+  `body`       VARCHAR(1000)      NOT NULL,
+  `server`     VARCHAR(36)        NOT NULL,
+  `world`      VARCHAR(64)        NOT NULL,
+  `x`          INT                NOT NULL,
+  `y`          INT                NOT NULL,
+  `z`          INT                NOT NULL,
+  `open`       TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `last`       TIMESTAMP          NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `priority`   INT                NOT NULL DEFAULT 1,
+  `closed`     BOOLEAN            NOT NULL DEFAULT FALSE,
+  PRIMARY KEY (`id`)
+) DEFAULT CHARSET = utf8;
+CREATE INDEX `ab_reports_closed_priority` ON `ab_reports` (`closed`, `priority`);
+
+CREATE TABLE `ab_schema_version` (
+  `version`     INT               NOT NULL,
+  `description` VARCHAR(64)       NOT NULL,
+  `applied`     TIMESTAMP         NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`version`)
+) DEFAULT CHARSET = utf8;
+INSERT INTO `ab_schema_version` (`version`, `description`) VALUES (8, 'Setup SQL');
+
 -- CREATE TABLE `ab_events` (
 --   `id`         INT AUTO_INCREMENT NOT NULL,
 --   `name`       VARCHAR(36)        NOT NULL,
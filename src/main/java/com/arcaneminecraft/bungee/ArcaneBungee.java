@@ -4,7 +4,12 @@ import com.arcaneminecraft.bungee.channel.DiscordBot;
 import com.arcaneminecraft.bungee.channel.PluginMessenger;
 import com.arcaneminecraft.bungee.command.*;
 import com.arcaneminecraft.bungee.module.*;
+import com.arcaneminecraft.bungee.storage.LocalDatabase;
+import com.arcaneminecraft.bungee.storage.NewsStore;
+import com.arcaneminecraft.bungee.storage.PlayerStore;
+import com.arcaneminecraft.bungee.storage.ReportStore;
 import com.arcaneminecraft.bungee.storage.SQLDatabase;
+import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.config.Configuration;
@@ -19,6 +24,7 @@ import java.nio.file.Files;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class ArcaneBungee extends Plugin {
@@ -26,7 +32,12 @@ public class ArcaneBungee extends Plugin {
     private File cacheDataFile;
     private Configuration config = null;
     private Configuration cacheData = null;
+    private BlockingThreads blockingThreads;
     private SQLDatabase sqlDatabase = null;
+    private PlayerStore playerStore = null;
+    private NewsStore newsStore = null;
+    private ReportStore reportStore = null;
+    private ReportDatabase reportDatabase = null;
     private PluginMessenger pluginMessenger;
     private SpyAlert spyAlert;
     private DiscordBot discordBot;
@@ -55,6 +66,7 @@ public class ArcaneBungee extends Plugin {
         this.cacheDataFile = new File(getDataFolder(), CONFIG_FILENAME);
 
         saveDefaultConfigs();
+        this.blockingThreads = new BlockingThreads(this);
 
         // Modules
         this.chatPrefixModule = new ChatPrefixModule();
@@ -76,6 +88,7 @@ public class ArcaneBungee extends Plugin {
         getProxy().getPluginManager().registerListener(this, pluginMessenger);
 
         if (getConfig().getBoolean("mariadb.enabled")) {
+            minecraftPlayerModule.loadSnapshot();
             try {
                 this.sqlDatabase = new SQLDatabase(this);
             } catch (SQLNonTransientConnectionException e) {
@@ -84,6 +97,18 @@ public class ArcaneBungee extends Plugin {
                 getLogger().log(Level.SEVERE, "SQL Exception occured. Please try restarting.", e);
                 //shrug
             }
+            this.playerStore = sqlDatabase;
+            this.newsStore = sqlDatabase;
+            this.reportStore = sqlDatabase;
+        } else if (getConfig().getBoolean("local-storage.enabled", false)) {
+            try {
+                LocalDatabase local = new LocalDatabase(this);
+                this.playerStore = local;
+                this.newsStore = local;
+                this.reportStore = local;
+            } catch (IOException e) {
+                getLogger().log(Level.SEVERE, "Cannot open local storage! Player data commands are disabled.", e);
+            }
         }
 
         if (!getConfig().getString("discord.token", "0").equals("0")) {
@@ -107,15 +132,25 @@ public class ArcaneBungee extends Plugin {
         // Player list
         getProxy().getPluginManager().registerListener(this, new ServerListListener(this));
 
-        // Commnads that depend on SQL
-        if (sqlDatabase != null) {
+        // Commnads that depend on storage
+        if (playerStore != null) {
             SeenCommands fs = new SeenCommands();
             getProxy().getPluginManager().registerCommand(this, fs.new Seen());
             getProxy().getPluginManager().registerCommand(this, fs.new FirstSeen());
             getProxy().getPluginManager().registerCommand(this, new FindPlayerCommand());
             getProxy().getPluginManager().registerCommand(this, new RedditCommand());
             getProxy().getPluginManager().registerCommand(this, new News(this));
+            // Move players no longer active out of memory
+            getProxy().getScheduler().schedule(this, minecraftPlayerModule::demote, 6, 6, TimeUnit.HOURS);
         }
+        if (reportStore != null) {
+            this.reportDatabase = new ReportDatabase(this, reportStore);
+            ReportCommands rc = new ReportCommands();
+            getProxy().getPluginManager().registerCommand(this, rc.new Report());
+            getProxy().getPluginManager().registerCommand(this, rc.new Reports());
+        }
+        if (sqlDatabase != null)
+            getProxy().getPluginManager().registerCommand(this, new DatabaseStatusCommand());
 
         // Commannds that directly depend on Discord
         if (discordBot != null) {
@@ -162,6 +197,14 @@ public class ArcaneBungee extends Plugin {
         chatPrefixModule.saveConfig();
         if (discordBot != null)
             discordBot.disable();
+        if (playerStore != null)
+            playerStore.close();
+        if (newsStore != null && newsStore != playerStore)
+            newsStore.close();
+        if (reportStore != null && reportStore != playerStore && reportStore != newsStore)
+            reportStore.close();
+        if (sqlDatabase != null)
+            minecraftPlayerModule.saveSnapshot();
         try {
             ConfigurationProvider.getProvider(YamlConfiguration.class).save(cacheData, cacheDataFile);
         } catch (IOException e) {
@@ -174,6 +217,31 @@ public class ArcaneBungee extends Plugin {
         return minecraftPlayerModule.getAFKList();
     }
 
+    /**
+     * @return player storage, or null if neither MariaDB nor local storage is available
+     */
+    public PlayerStore getPlayerStore() {
+        return playerStore;
+    }
+
+    /**
+     * @return news storage, or null if neither MariaDB nor local storage is available
+     */
+    public NewsStore getNewsStore() {
+        return newsStore;
+    }
+
+    /**
+     * @return reports, or null if neither MariaDB nor local storage is available
+     */
+    public ReportDatabase getReportDatabase() {
+        return reportDatabase;
+    }
+
+    public BlockingThreads getBlockingThreads() {
+        return blockingThreads;
+    }
+
     public PluginMessenger getPluginMessenger() {
         return pluginMessenger;
     }
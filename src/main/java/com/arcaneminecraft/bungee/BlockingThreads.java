@@ -0,0 +1,89 @@
+package com.arcaneminecraft.bungee;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Threads for blocking calls such as JDBC and Discord REST.
+ * With "virtual-threads" on and a Java 21+ runtime, these are virtual threads, found by reflection
+ * so the plugin still builds and runs on Java 8. Otherwise they are ordinary daemon threads.
+ */
+public final class BlockingThreads {
+    // Thread.ofVirtual() and the Thread.Builder methods used on it, or null before Java 21
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null;
+        try {
+            // Looked up on the public interface; the builder class itself is not accessible
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+
+    private final boolean virtual;
+
+    public BlockingThreads(ArcaneBungee plugin) {
+        this(plugin.getLogger(), plugin.getConfig().getBoolean("virtual-threads", false));
+    }
+
+    /**
+     * For use without the plugin, such as from benchmarks.
+     * @param wanted whether to use virtual threads if this Java version has them
+     */
+    public BlockingThreads(Logger logger, boolean wanted) {
+        this.virtual = wanted && OF_VIRTUAL != null;
+        if (wanted && !virtual)
+            logger.warning("virtual-threads is on, but this Java version has no virtual threads; using platform threads");
+        else if (virtual)
+            logger.info("Running blocking database and Discord calls on virtual threads");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @param prefix thread name prefix; threads are numbered from 0
+     */
+    public ThreadFactory factory(String prefix) {
+        if (virtual) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                throw new IllegalStateException("Could not create virtual thread factory", ex);
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Executor for one-off blocking calls made from proxy threads, each on a virtual thread of its own.
+     * Without virtual threads there is none; callers should use their library's own async calls instead.
+     * @throws IllegalStateException if not {@link #isVirtual()}
+     */
+    public Executor executor(String prefix) {
+        if (!virtual)
+            throw new IllegalStateException("No virtual threads");
+        ThreadFactory factory = factory(prefix);
+        return r -> factory.newThread(r).start();
+    }
+}
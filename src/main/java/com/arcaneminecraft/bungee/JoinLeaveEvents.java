@@ -174,6 +174,9 @@ public class JoinLeaveEvents implements Listener {
 
     @EventHandler
     public void onPlayerLeave(PlayerDisconnectEvent e) {
+        // Before the check below, so players who leave while joining are not left marked AFK
+        plugin.getMinecraftPlayerModule().unsetAFK(e.getPlayer().getUniqueId());
+
         // Check if player joined and left immediately
         Joining c = connecting.get(e.getPlayer());
         if (c != null) {
@@ -1,5 +1,6 @@
 package com.arcaneminecraft.bungee;
 
+import com.arcaneminecraft.bungee.module.data.AfkRegistry;
 import net.md_5.bungee.api.ServerPing;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.ProxyPingEvent;
@@ -28,10 +29,13 @@ public final class ServerListListener implements Listener {
             int size = plugin.getProxy().getOnlineCount();
             ServerPing.PlayerInfo[] list = new ServerPing.PlayerInfo[size];
             Collection<ProxiedPlayer> ps = plugin.getProxy().getPlayers();
+            AfkRegistry afk = plugin.getMinecraftPlayerModule().getAFK();
 
             int i = 0;
             for (ProxiedPlayer p : ps) {
-                list[i] = new ServerPing.PlayerInfo(p.getName(), p.getUniqueId());
+                long idle = afk.getDuration(p.getUniqueId());
+                String name = idle < 0 ? p.getName() : p.getName() + " (AFK " + AfkRegistry.formatDuration(idle) + ")";
+                list[i] = new ServerPing.PlayerInfo(name, p.getUniqueId());
                 i++;
                 if (i == list.length)
                     break;
@@ -19,7 +19,7 @@ public interface TabCompletePreset {
     }
 
     static Iterable<String> allPlayers(String[] args) {
-        return argStartsWith(args, ArcaneBungee.getInstance().getMinecraftPlayerModule().getAllNames());
+        return ArcaneBungee.getInstance().getMinecraftPlayerModule().getNamesStartingWith(args[args.length - 1]);
     }
 
     static Iterable<String> argStartsWith(String[] args, Iterable<String> choices) {
@@ -7,12 +7,16 @@ import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.JDABuilder;
 import net.dv8tion.jda.core.OnlineStatus;
 import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.requests.RestAction;
 import net.dv8tion.jda.webhook.WebhookClient;
 import net.dv8tion.jda.webhook.WebhookClientBuilder;
 import net.dv8tion.jda.webhook.WebhookMessageBuilder;
 
 import javax.security.auth.login.LoginException;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 
 public class DiscordBot {
     private static DiscordBot instance;
@@ -27,11 +31,16 @@ public class DiscordBot {
     private final TextChannel mcChatChannel;
     private final Role playerRole;
     private final DiscordListener listener;
+    // Runs REST calls made from proxy threads on virtual threads, or null to use JDA's queue; see BlockingThreads
+    private final Executor rest;
+    // With virtual threads, meta messages are sent one after another so joins and leaves stay in order
+    private CompletableFuture<Void> metaTail = CompletableFuture.completedFuture(null);
 
     public DiscordBot(ArcaneBungee plugin) throws LoginException, InterruptedException {
         DiscordBot.instance = this;
 
         this.plugin = plugin;
+        this.rest = plugin.getBlockingThreads().isVirtual() ? plugin.getBlockingThreads().executor("ArcaneBungee-Discord-") : null;
         this.avatarSourceFormat = plugin.getConfig().getString("discord.avatar-source", "https://crafatar.com/avatars/%s?overlay");
         String token = plugin.getConfig().getString("discord.token");
         this.jda = new JDABuilder(AccountType.BOT).setToken(token).build().awaitReady();
@@ -59,6 +68,8 @@ public class DiscordBot {
     }
 
     public synchronized void disable() {
+        // Let queued meta messages go out first
+        metaTail.join();
         mcChatChannel.sendMessage(":wave: *Server is now offline*").complete();
         jda.getPresence().setStatus(OnlineStatus.INVISIBLE);
         webhookClient.close();
@@ -91,8 +102,18 @@ public class DiscordBot {
         webhookClient.send(b.build());
     }
 
-    public void metaToDiscord(String msg) {
-        mcChatChannel.sendMessage(META_MSG_MARKER + msg).complete();
+    public synchronized void metaToDiscord(String msg) {
+        RestAction<Message> action = mcChatChannel.sendMessage(META_MSG_MARKER + msg);
+        if (rest == null) {
+            // JDA sends requests to the same channel in order
+            send(action, "could not send message");
+            return;
+        }
+        metaTail = metaTail.thenRunAsync(action::complete, rest)
+                .exceptionally(ex -> {
+                    plugin.getLogger().log(Level.WARNING, "Discord: could not send message", ex);
+                    return null;
+                });
     }
 
     public void joinLeaveToDiscord(String msg, int count) {
@@ -108,7 +129,7 @@ public class DiscordBot {
             return;
         }
 
-        guild.getController().addSingleRoleToMember(member, playerRole).complete();
+        send(guild.getController().addSingleRoleToMember(member, playerRole), "could not add player role");
     }
 
     public void userUnlink(long id) {
@@ -117,7 +138,23 @@ public class DiscordBot {
             return;
         }
 
-        guild.getController().removeSingleRoleFromMember(member, playerRole).complete();
+        send(guild.getController().removeSingleRoleFromMember(member, playerRole), "could not remove player role");
+    }
+
+    /**
+     * Makes a REST call without blocking the caller: on a virtual thread of its own if enabled,
+     * otherwise through JDA's own request queue.
+     */
+    private void send(RestAction<?> action, String failure) {
+        if (rest == null) {
+            action.queue(null, ex -> plugin.getLogger().log(Level.WARNING, "Discord: " + failure, ex));
+            return;
+        }
+        CompletableFuture.runAsync(action::complete, rest)
+                .exceptionally(ex -> {
+                    plugin.getLogger().log(Level.WARNING, "Discord: " + failure, ex);
+                    return null;
+                });
     }
 
     public Member getMember(String userTag) {
@@ -102,11 +102,12 @@ public class PluginMessenger implements Listener {
                         String uuid = is.readUTF();
                         boolean isAFK = is.readBoolean();
 
-                        ProxiedPlayer p = ProxyServer.getInstance().getPlayer(UUID.fromString(uuid));
-                        if (isAFK)
-                            mpModule.setAFK(p);
-                        else
-                            mpModule.unsetAFK(p);
+                        UUID u = UUID.fromString(uuid);
+                        if (!isAFK)
+                            mpModule.unsetAFK(u);
+                        // A player who already left would never be cleared
+                        else if (ProxyServer.getInstance().getPlayer(u) != null)
+                            mpModule.setAFK(u);
                     }
                     return;
                 }
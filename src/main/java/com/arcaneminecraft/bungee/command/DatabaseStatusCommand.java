@@ -0,0 +1,120 @@
+package com.arcaneminecraft.bungee.command;
+
+import com.arcaneminecraft.api.ArcaneColor;
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
+import com.arcaneminecraft.bungee.module.data.NameFilter;
+import com.arcaneminecraft.bungee.module.data.OfflinePlayerCache;
+import com.arcaneminecraft.bungee.module.data.TieredDirectory;
+import com.arcaneminecraft.bungee.storage.LatencyHistogram;
+import com.arcaneminecraft.bungee.storage.QueryMonitor;
+import com.arcaneminecraft.bungee.storage.SQLDatabase;
+import com.arcaneminecraft.bungee.storage.StorageExecutor;
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DatabaseStatusCommand extends Command implements TabExecutor {
+    public DatabaseStatusCommand() {
+        super("dbstatus", "arcane.command.dbstatus");
+    }
+
+    @Override
+    public void execute(CommandSender sender, String[] args) {
+        SQLDatabase db = SQLDatabase.getInstance();
+
+        if (args.length != 0 && args[0].equalsIgnoreCase("queries")) {
+            int n = 10;
+            if (args.length > 1) {
+                try {
+                    n = Math.max(1, Integer.parseInt(args[1]));
+                } catch (NumberFormatException ignore) {}
+            }
+            queries(sender, db.getQueryMonitor(), n);
+            return;
+        }
+        if (args.length != 0 && args[0].equalsIgnoreCase("reset")) {
+            db.getQueryMonitor().reset();
+            send(sender, ArcaneColor.FOCUS, "Query statistics reset");
+            return;
+        }
+
+        StorageExecutor ex = db.getExecutor();
+
+        send(sender, ArcaneColor.HEADING, "Database: " + db.getCircuitBreaker().getState()
+                + ", rejected while down " + db.getCircuitBreaker().getRejected());
+        send(sender, ArcaneColor.HEADING, "Write journal: " + db.getJournalSize() + " waiting"
+                + ", journaled " + db.getJournaledCount()
+                + ", replayed " + db.getReplayedCount()
+                + ", rejected " + db.getRejectedCount());
+        send(sender, ArcaneColor.HEADING, "Database workers: " + ex.getThreadCount() + ", queue capacity per lane: " + ex.getCapacity());
+        for (StorageExecutor.Lane lane : StorageExecutor.Lane.values()) {
+            send(sender, ArcaneColor.FOCUS, " " + lane
+                    + ": depth " + ex.getQueueDepth(lane)
+                    + ", submitted " + ex.getSubmitted(lane)
+                    + ", completed " + ex.getCompleted(lane)
+                    + ", rejected " + ex.getRejected(lane));
+            send(sender, ArcaneColor.CONTENT, "  wait " + ex.getWaitTime(lane));
+            send(sender, ArcaneColor.CONTENT, "  exec " + ex.getExecutionTime(lane));
+        }
+
+        LatencyHistogram join = db.getJoinLatency();
+        if (join != null)
+            send(sender, ArcaneColor.HEADING, "Player join: " + join);
+
+        MinecraftPlayerModule mpModule = ArcaneBungee.getInstance().getMinecraftPlayerModule();
+        TieredDirectory dir = mpModule.getDirectory();
+        send(sender, ArcaneColor.HEADING, "Player directory: " + dir.getHotSize() + " in memory, "
+                + dir.getFootprint() / 1024 + " KB; " + dir.getColdSize() + " on disk, "
+                + dir.getColdFileSize() / 1024 + " KB");
+
+        OfflinePlayerCache cache = mpModule.getOfflineCache();
+        send(sender, ArcaneColor.HEADING, "Offline player cache: " + cache.size() + "/" + cache.getMaxSize()
+                + ", hits " + cache.getHits()
+                + ", misses " + cache.getMisses()
+                + ", evictions " + cache.getEvictions());
+
+        NameFilter filter = mpModule.getNameFilter();
+        if (filter != null)
+            send(sender, ArcaneColor.HEADING, String.format("Name filter: %d entries, %d KB, false positive rate about %.2f%%"
+                            + ", rejected %d, false positives %d",
+                    filter.getAdded(), filter.getFootprint() / 1024, filter.getFalsePositiveRate() * 100,
+                    mpModule.getFilterRejected(), mpModule.getFilterFalsePositives()));
+    }
+
+    private void queries(CommandSender sender, QueryMonitor monitor, int n) {
+        send(sender, ArcaneColor.HEADING, "Connection acquire: " + monitor.getAcquireLatency()
+                + ", errors " + monitor.getAcquireErrors());
+        send(sender, ArcaneColor.HEADING, "Top " + n + " statements by total time (slow >= "
+                + monitor.getSlowThresholdMillis() + " ms):");
+        for (QueryMonitor.Stats s : monitor.getTop(n)) {
+            LatencyHistogram l = s.getLatency();
+            send(sender, ArcaneColor.FOCUS, " " + (l.getTotalMicros() / 1000) + " ms total"
+                    + ", rows changed " + s.getRows()
+                    + ", errors " + s.getErrors()
+                    + ", slow " + s.getSlow());
+            send(sender, ArcaneColor.CONTENT, "  " + l);
+            String sql = s.getSql().replace('\n', ' ');
+            send(sender, ArcaneColor.CONTENT, "  " + (sql.length() > 120 ? sql.substring(0, 117) + "..." : sql));
+        }
+    }
+
+    private void send(CommandSender sender, ChatColor color, String msg) {
+        BaseComponent send = new TextComponent(msg);
+        send.setColor(color);
+        sender.sendMessage(send);
+    }
+
+    @Override
+    public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length == 1)
+            return Arrays.asList("queries", "reset");
+        return Collections.emptyList();
+    }
+}
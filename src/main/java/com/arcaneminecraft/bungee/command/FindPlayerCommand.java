@@ -5,7 +5,8 @@ import com.arcaneminecraft.api.ArcaneText;
 import com.arcaneminecraft.api.BungeeCommandUsage;
 import com.arcaneminecraft.bungee.ArcaneBungee;
 import com.arcaneminecraft.bungee.TabCompletePreset;
-import net.md_5.bungee.api.ChatColor;
+import com.arcaneminecraft.bungee.module.data.NameHistory;
+import com.arcaneminecraft.bungee.module.data.PlayerDirectory;
 import net.md_5.bungee.api.ChatMessageType;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.chat.BaseComponent;
@@ -16,9 +17,13 @@ import net.md_5.bungee.api.plugin.TabExecutor;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FindPlayerCommand extends Command implements TabExecutor {
+    // Players can be shown at most this many matches
+    private static final int MAX_RESULTS = 500;
+    // Milliseconds to search for before showing what was found
+    private static final long TIME_LIMIT = 250;
+    private static final int MAX_PAST_RESULTS = 20;
     private final ArcaneBungee plugin = ArcaneBungee.getInstance();
 
     public FindPlayerCommand() {
@@ -35,101 +40,80 @@ public class FindPlayerCommand extends Command implements TabExecutor {
             return;
         }
 
-        AtomicBoolean done = new AtomicBoolean(false);
         Locale locale = sender instanceof ProxiedPlayer ? ((ProxiedPlayer) sender).getLocale() : null;
 
-        String searchLower = args[0].toLowerCase();
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            List<String> pl = new ArrayList<>();
-
-            // Match all players
-            for (String name : plugin.getMinecraftPlayerModule().getAllNames()) {
-                int start;
-                int end;
-                int searchLength = args[0].length();
-                String nameLower = name.toLowerCase();
-                if ((start = nameLower.indexOf(searchLower)) != -1) {
-                    // make it so end - beginning = searching string
-                    end = start + searchLength;
-
-                    StringBuilder toAdd = new StringBuilder(name.substring(0, start));
-
-                    // Highlight matched portion
-                    toAdd.append(ArcaneColor.FOCUS)
-                            .append(name, start, end)
-                            .append(ArcaneColor.CONTENT);
-
-                    // Search again until it goes through and matches the entire string.
-                    while ((start = name.toLowerCase().indexOf(searchLower, end)) != -1) {
-                        toAdd.append(name, end, start)
-                                .append(ArcaneColor.FOCUS);
-
-                        end = start + searchLength;
+        // One more than can be shown, to tell when there are too many
+        int limit = sender instanceof ProxiedPlayer ? MAX_RESULTS + 1 : Integer.MAX_VALUE;
 
-                        toAdd.append(name, start, end)
-                                .append(ArcaneColor.CONTENT);
-                    }
-                    toAdd.append(name, end, name.length());
-
-                    // Add it to the list.
-                    pl.add(toAdd.toString());
-                }
-            }
+        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
+            PlayerDirectory.SearchResult result = plugin.getMinecraftPlayerModule()
+                    .findNames(args[0], limit, TimeUnit.MILLISECONDS.toNanos(TIME_LIMIT));
+            List<PlayerDirectory.Match> matches = result.getMatches();
+            List<NameHistory.Entry> past = plugin.getMinecraftPlayerModule().findPastNames(args[0], MAX_PAST_RESULTS);
 
-            if (pl.isEmpty()) {
-                done.set(true);
+            if (matches.isEmpty() && past.isEmpty()) {
                 BaseComponent send = ArcaneText.translatable(locale, "commands.findplayer.none", args[0]);
                 send.setColor(ArcaneColor.NEGATIVE);
-                if (sender instanceof ProxiedPlayer)
-                    ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
-                else
-                    sender.sendMessage(send);
+                send(sender, send);
                 return;
             }
 
-            pl.sort(Comparator.comparing(ChatColor::stripColor));
-            done.set(true);
-
-            if (pl.size() > 500 && sender instanceof ProxiedPlayer) {
+            if (matches.size() > MAX_RESULTS && sender instanceof ProxiedPlayer) {
                 BaseComponent send = ArcaneText.translatable(locale, "commands.findplayer.tooMany", args[0]);
                 send.setColor(ArcaneColor.NEGATIVE);
-                ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
+                send(sender, send);
                 return;
             }
 
+            List<String> pl = new ArrayList<>(matches.size());
+            for (PlayerDirectory.Match m : matches) {
+                String name = m.getName();
+                StringBuilder toAdd = new StringBuilder();
+                int end = 0;
+
+                // Highlight matched portions
+                for (int start : m.getOffsets()) {
+                    toAdd.append(name, end, start)
+                            .append(ArcaneColor.FOCUS);
+                    end = start + m.getLength();
+                    toAdd.append(name, start, end)
+                            .append(ArcaneColor.CONTENT);
+                }
+                toAdd.append(name, end, name.length());
+
+                pl.add(toAdd.toString());
+            }
 
             BaseComponent part = new TextComponent(args[0]);
             part.setColor(ArcaneColor.LIST_VARS);
             BaseComponent head = ArcaneText.translatable(locale, "commands.findplayer.header", part);
             head.setColor(ArcaneColor.LIST);
 
-            BaseComponent[] content = TextComponent.fromLegacyText(ArcaneColor.CONTENT + String.join(", ", pl));
+            send(sender, head);
+            if (!pl.isEmpty())
+                send(sender, TextComponent.fromLegacyText(ArcaneColor.CONTENT + String.join(", ", pl)));
 
-            if (sender instanceof ProxiedPlayer) {
-                ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, head);
-                ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, content);
-            } else {
-                sender.sendMessage(head);
-                sender.sendMessage(content);
+            if (!past.isEmpty()) {
+                List<String> was = new ArrayList<>(past.size());
+                for (NameHistory.Entry e : past)
+                    was.add(ArcaneColor.FOCUS + e.getName() + ArcaneColor.CONTENT
+                            + " (now " + plugin.getMinecraftPlayerModule().getName(e.getUUID()) + ")");
+                send(sender, TextComponent.fromLegacyText(ArcaneColor.HEADING + "Previously: " + ArcaneColor.CONTENT + String.join(", ", was)));
             }
-        });
-
-        plugin.getProxy().getScheduler().schedule(plugin, () -> {
-            if (done.get())
-                return;
-
-            BaseComponent part = new TextComponent(args[0]);
-            part.setColor(ArcaneColor.FOCUS);
-
-            BaseComponent send = ArcaneText.translatable(locale, "commands.findplayer.wait", part);
-            send.setColor(ArcaneColor.CONTENT);
 
-            if (sender instanceof ProxiedPlayer)
-                ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
-            else
-                sender.sendMessage(send);
+            if (!result.isComplete()) {
+                BaseComponent send = new TextComponent("The search took too long and stopped early; some players may be missing.");
+                send.setColor(ArcaneColor.NEGATIVE);
+                send(sender, send);
+            }
+        });
+    }
 
-        }, 1000L, TimeUnit.MILLISECONDS);
+    private static void send(CommandSender sender, BaseComponent... send) {
+        if (sender instanceof ProxiedPlayer)
+            ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
+        else
+            sender.sendMessage(send);
     }
 
     @Override
@@ -8,6 +8,7 @@ import com.arcaneminecraft.bungee.TabCompletePreset;
 import com.arcaneminecraft.bungee.module.MessengerModule;
 import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
 import com.arcaneminecraft.bungee.module.PermissionsModule;
+import com.arcaneminecraft.bungee.module.data.NameFilter;
 import net.md_5.bungee.api.ChatMessageType;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
@@ -86,7 +87,9 @@ public class GreylistCommands {
                     }
 
                     uuid = mpModule.getUUID(pl);
-                    if (uuid != null) {
+                    // Anyone LuckPerms knows has joined, so a name the filter rules out is not worth asking about
+                    NameFilter filter = mpModule.getNameFilter();
+                    if (uuid != null || (filter != null && !filter.mightContain(pl))) {
                         greylist(sender, pl, uuid);
                         continue;
                     }
@@ -112,6 +115,7 @@ public class GreylistCommands {
                     ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
                 else
                     sender.sendMessage(send);
+                NameSuggestions.sendDidYouMean(sender, input, "/" + getName() + " ");
                 return;
             }
 
@@ -1,10 +1,12 @@
 package com.arcaneminecraft.bungee.command;
 
+import com.arcaneminecraft.api.ArcaneColor;
 import com.arcaneminecraft.api.ArcaneText;
 import com.arcaneminecraft.api.BungeeCommandUsage;
 import com.arcaneminecraft.bungee.ArcaneBungee;
 import com.arcaneminecraft.bungee.DiscordCommandExecutor;
 import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
+import com.arcaneminecraft.bungee.module.data.AfkRegistry;
 import com.google.common.collect.ImmutableSet;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.entities.Message;
@@ -19,7 +21,6 @@ import net.md_5.bungee.api.plugin.Command;
 import net.md_5.bungee.api.plugin.TabExecutor;
 
 import java.util.Iterator;
-import java.util.List;
 
 public class ListCommand extends Command implements TabExecutor, DiscordCommandExecutor {
     private final MinecraftPlayerModule mpModule = ArcaneBungee.getInstance().getMinecraftPlayerModule();
@@ -40,6 +41,7 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
                 String.valueOf(server.getConfig().getPlayerLimit())
         );
 
+        AfkRegistry afk = mpModule.getAFK();
         BaseComponent body = new TextComponent();
         Iterator<ProxiedPlayer> i = server.getPlayers().iterator();
         if (i.hasNext()) {
@@ -47,12 +49,14 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
             body.addExtra(ArcaneText.playerComponentBungee(first));
             if (showUUID)
                 body.addExtra("(" + first.getUniqueId() + ")");
+            addAFK(body, afk, first);
 
             i.forEachRemaining((ProxiedPlayer p) -> {
                 body.addExtra(", ");
                 body.addExtra(ArcaneText.playerComponentBungee(p));
                 if (showUUID)
                     body.addExtra("(" + p.getUniqueId() + ")");
+                addAFK(body, afk, p);
             });
         }
 
@@ -66,6 +70,15 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
 
     }
 
+    private static void addAFK(BaseComponent body, AfkRegistry afk, ProxiedPlayer p) {
+        long idle = afk.getDuration(p.getUniqueId());
+        if (idle < 0)
+            return;
+        BaseComponent tag = new TextComponent(" (AFK " + AfkRegistry.formatDuration(idle) + ")");
+        tag.setColor(ArcaneColor.META);
+        body.addExtra(tag);
+    }
+
     @Override
     public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
         return ImmutableSet.of("uuids");
@@ -85,7 +98,7 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
     public boolean executeDiscordCommand(Message m, String[] args) {
         boolean uuid = args.length == 2 && args[1].equalsIgnoreCase("uuids");
 
-        List<ProxiedPlayer> afk = mpModule.getAFKList();
+        AfkRegistry afk = mpModule.getAFK();
         StringBuilder online;
         Iterator<ProxiedPlayer> i = ProxyServer.getInstance().getPlayers().iterator();
         if (!i.hasNext()) {
@@ -94,8 +107,9 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
             online = new StringBuilder();
             while (i.hasNext()) {
                 ProxiedPlayer p = i.next();
-                if (afk.contains(p))
-                    online.append("[AFK] ");
+                long idle = afk.getDuration(p.getUniqueId());
+                if (idle >= 0)
+                    online.append("[AFK ").append(AfkRegistry.formatDuration(idle)).append("] ");
                 online.append("**").append(p.getName()).append("**");
                 if (uuid)
                     online.append(" (").append(p.getUniqueId()).append(")");
@@ -110,7 +124,8 @@ public class ListCommand extends Command implements TabExecutor, DiscordCommandE
                 + (onlineCount == 1 ? "is" : "are")
                 + " **%d**/%d player"
                 + (onlineCount == 1 ? "" : "s")
-                + " online";
+                + " online"
+                + (afk.size() == 0 ? "" : ", " + afk.size() + " AFK");
 
 
         EmbedBuilder embed = new EmbedBuilder()
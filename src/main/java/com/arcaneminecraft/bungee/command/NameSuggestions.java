@@ -0,0 +1,58 @@
+package com.arcaneminecraft.bungee.command;
+
+import com.arcaneminecraft.api.ArcaneColor;
+import com.arcaneminecraft.api.ArcaneText;
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.ClickEvent;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.List;
+
+/**
+ * "Player not found" with names close to what was typed, each one click away from running the command again.
+ */
+final class NameSuggestions {
+    private NameSuggestions() {
+    }
+
+    /**
+     * @param command command to suggest with a name appended, e.g. "/seen "
+     */
+    static void sendNotFound(CommandSender sender, String input, String command) {
+        send(sender, ArcaneText.playerNotFound());
+        sendDidYouMean(sender, input, command);
+    }
+
+    /**
+     * Sends nothing if there are no close names.
+     */
+    static void sendDidYouMean(CommandSender sender, String input, String command) {
+        List<String> names = ArcaneBungee.getInstance().getMinecraftPlayerModule().getSimilarNames(input);
+        if (names.isEmpty())
+            return;
+
+        BaseComponent send = new TextComponent("Did you mean ");
+        send.setColor(ArcaneColor.CONTENT);
+        for (int i = 0; i < names.size(); i++) {
+            if (i != 0)
+                send.addExtra(i == names.size() - 1 ? " or " : ", ");
+            BaseComponent name = new TextComponent(names.get(i));
+            name.setColor(ArcaneColor.FOCUS);
+            name.setClickEvent(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, command + names.get(i)));
+            send.addExtra(name);
+        }
+        send.addExtra("?");
+        send(sender, send);
+    }
+
+    private static void send(CommandSender sender, BaseComponent send) {
+        if (sender instanceof ProxiedPlayer)
+            ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
+        else
+            sender.sendMessage(send);
+    }
+}
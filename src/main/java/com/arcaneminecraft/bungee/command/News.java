@@ -5,11 +5,14 @@ import com.arcaneminecraft.api.ArcaneText;
 import com.arcaneminecraft.api.BungeeCommandUsage;
 import com.arcaneminecraft.bungee.ArcaneBungee;
 import com.arcaneminecraft.bungee.TabCompletePreset;
+import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
 import com.arcaneminecraft.bungee.module.NewsModule;
+import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
 import net.md_5.bungee.api.ChatMessageType;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Command;
@@ -17,8 +20,13 @@ import net.md_5.bungee.api.plugin.TabExecutor;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Locale;
+import java.util.TimeZone;
 
 public class News extends Command implements TabExecutor {
+    // Walking to a page fetches every page before it that is not cached
+    private static final int MAX_PAGE = 100;
+
     ArcaneBungee plugin;
     public News(ArcaneBungee plugin) {
         super(BungeeCommandUsage.NEWS.getName(), BungeeCommandUsage.NEWS.getPermission(), BungeeCommandUsage.NEWS.getAliases());
@@ -26,6 +34,7 @@ public class News extends Command implements TabExecutor {
     }
 
     private final NewsModule module = ArcaneBungee.getInstance().getNewsModule();
+    private final MinecraftPlayerModule mpModule = ArcaneBungee.getInstance().getMinecraftPlayerModule();
 
     @Override
     public void execute(CommandSender sender, String[] args) {
@@ -58,15 +67,33 @@ public class News extends Command implements TabExecutor {
             }
 
             setNews(sender, n.toString());
+            return;
+        }
+
+        if (args[0].equalsIgnoreCase("history")) {
+            int page = 1;
+            if (args.length > 1) {
+                try {
+                    page = Integer.parseInt(args[1]);
+                } catch (NumberFormatException ignore) {
+                    page = 0;
+                }
+            }
+            if (page < 1 || page > MAX_PAGE) {
+                send(sender, ArcaneText.usage("/news history [1-" + MAX_PAGE + "]"));
+                return;
+            }
+            sendHistory(sender, page);
         }
-        // TODO: Allow to see news history
     }
 
     @Override
     public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
-        if (args.length == 1 && sender.hasPermission("arcane.command.news.set")) {
+        if (args.length == 1) {
             ArrayList<String> iter = new ArrayList<>();
-            iter.add("set");
+            iter.add("history");
+            if (sender.hasPermission("arcane.command.news.set"))
+                iter.add("set");
             return TabCompletePreset.argStartsWith(args, iter);
         }
         return Collections.emptyList();
@@ -92,6 +119,69 @@ public class News extends Command implements TabExecutor {
         }
     }
 
+    private void sendHistory(CommandSender sender, int page) {
+        Locale l;
+        TimeZone zone = null;
+        if (sender instanceof ProxiedPlayer) {
+            l = ((ProxiedPlayer) sender).getLocale();
+            ArcanePlayer data = mpModule.getPlayerData(((ProxiedPlayer) sender).getUniqueId());
+            if (data != null)
+                zone = data.getTimezone();
+        } else {
+            l = null;
+        }
+        final TimeZone z = zone == null ? TimeZone.getDefault() : zone;
+
+        module.getPage(page).thenAccept(p -> {
+            if (p == null) {
+                BaseComponent send = new TextComponent("News history is unavailable right now");
+                send.setColor(ArcaneColor.CONTENT);
+                send(sender, send);
+                return;
+            }
+            send(sender, p.render(l + "/" + z.getID(), pg -> renderHistory(pg, l, z)));
+        });
+    }
+
+    private BaseComponent renderHistory(NewsModule.Page page, Locale l, TimeZone zone) {
+        BaseComponent send = new TextComponent("News history, page " + page.getNumber());
+        send.setColor(ArcaneColor.HEADING);
+
+        if (page.getEntries().isEmpty()) {
+            BaseComponent none = new TextComponent("\n No news here");
+            none.setColor(ArcaneColor.CONTENT);
+            send.addExtra(none);
+            return send;
+        }
+
+        for (NewsModule.Entry e : page.getEntries()) {
+            BaseComponent line = new TextComponent("\n ");
+            line.setColor(ArcaneColor.CONTENT);
+            line.addExtra(ArcaneText.timeText(e.getTime(), l, zone, ArcaneColor.FOCUS));
+            String author = e.getAuthor() == null ? null : mpModule.getName(e.getAuthor());
+            if (author != null)
+                line.addExtra(" by " + author);
+            line.addExtra(": " + e.getContent());
+            send.addExtra(line);
+        }
+
+        if (page.isFull() && page.getNumber() < MAX_PAGE) {
+            String cmd = "/news history " + (page.getNumber() + 1);
+            BaseComponent next = new TextComponent("\n " + cmd);
+            next.setColor(ArcaneColor.FOCUS);
+            next.setClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, cmd));
+            send.addExtra(next);
+        }
+        return send;
+    }
+
+    private void send(CommandSender sender, BaseComponent send) {
+        if (sender instanceof ProxiedPlayer)
+            ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
+        else
+            sender.sendMessage(send);
+    }
+
     private void setNews(CommandSender sender, String content) {
         module.newNews(
                 sender instanceof ProxiedPlayer ? ((ProxiedPlayer) sender).getUniqueId() : null,
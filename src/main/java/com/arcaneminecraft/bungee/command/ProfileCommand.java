@@ -9,7 +9,6 @@ import com.arcaneminecraft.bungee.module.DiscordUserModule;
 import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
 import com.arcaneminecraft.bungee.module.SettingModule;
 import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
-import com.arcaneminecraft.bungee.storage.SQLDatabase;
 import net.md_5.bungee.api.ChatMessageType;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
@@ -22,6 +21,7 @@ import net.md_5.bungee.api.plugin.Command;
 import net.md_5.bungee.api.plugin.TabExecutor;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.UUID;
@@ -32,7 +32,6 @@ public class ProfileCommand extends Command implements TabExecutor {
     private final MinecraftPlayerModule mpModule = ArcaneBungee.getInstance().getMinecraftPlayerModule();
     private final DiscordUserModule duModule = ArcaneBungee.getInstance().getDiscordUserModule();
     private final SettingModule sModule = ArcaneBungee.getInstance().getSettingModule();
-    private final SQLDatabase sqlDatabase = SQLDatabase.getInstance();
 
     public ProfileCommand() {
         super(BungeeCommandUsage.PROFILE.getName(), BungeeCommandUsage.PROFILE.getPermission(), BungeeCommandUsage.PROFILE.getAliases());
@@ -51,17 +50,14 @@ public class ProfileCommand extends Command implements TabExecutor {
         } else {
             uuid = mpModule.getUUID(args[0]);
             if (uuid == null) {
-                if (sender instanceof ProxiedPlayer)
-                    ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, ArcaneText.playerNotFound());
-                else
-                    sender.sendMessage(ArcaneText.playerNotFound());
+                NameSuggestions.sendNotFound(sender, args[0], "/" + getName() + " ");
                 return;
             }
         }
 
         ArcanePlayer mp = mpModule.getPlayerData(uuid);
         if (mp == null) {
-            sqlDatabase.fetchPlayerData(uuid).thenAcceptAsync(arcPlayer -> sendProfile(sender, arcPlayer));
+            mpModule.fetchPlayerData(uuid).thenAcceptAsync(arcPlayer -> sendProfile(sender, arcPlayer));
         } else {
             sendProfile(sender, mp);
         }
@@ -112,6 +108,14 @@ public class ProfileCommand extends Command implements TabExecutor {
                         ArcaneText.timeText(pl.getLastLeft(), l, zone, ArcaneColor.FOCUS)
                 ));
 
+        // Attach past names
+        List<String> pastNames = mpModule.getPastNames(pl.getUniqueID());
+        if (!pastNames.isEmpty()) {
+            send.append("\n Previously known as ", ComponentBuilder.FormatRetention.NONE)
+                    .color(ArcaneColor.HEADING)
+                    .append(String.join(", ", pastNames))
+                    .color(ArcaneColor.FOCUS);
+        }
 
         int option = pl.getOptions();
         boolean bypass = sender.hasPermission(BYPASS_PUBLIC_TOGGLE);
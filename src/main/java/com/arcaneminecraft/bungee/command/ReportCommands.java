@@ -0,0 +1,201 @@
+package com.arcaneminecraft.bungee.command;
+
+import com.arcaneminecraft.api.ArcaneColor;
+import com.arcaneminecraft.api.ArcaneText;
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.TabCompletePreset;
+import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
+import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.ClickEvent;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.TabExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ReportCommands {
+    private static final String STAFF_PERMISSION = "arcane.command.reports";
+    private static final int DEFAULT_LIST = 10;
+    private static final int MAX_LIST = 50;
+
+    private final ReportDatabase reports = ArcaneBungee.getInstance().getReportDatabase();
+    private final MinecraftPlayerModule mpModule = ArcaneBungee.getInstance().getMinecraftPlayerModule();
+
+    public class Report extends Command implements TabExecutor {
+        public Report() {
+            super("report", "arcane.command.report");
+        }
+
+        @Override
+        public void execute(CommandSender sender, String[] args) {
+            if (!(sender instanceof ProxiedPlayer)) {
+                sender.sendMessage(ArcaneText.noConsoleMsg());
+                return;
+            }
+            ProxiedPlayer p = (ProxiedPlayer) sender;
+
+            if (args.length == 0) {
+                send(sender, ArcaneText.usage("/report <message ...>"));
+                return;
+            }
+
+            String body = String.join(" ", args);
+            if (body.length() > 1000)
+                body = body.substring(0, 1000);
+            String server = p.getServer() == null ? "" : p.getServer().getInfo().getName();
+
+            // The proxy does not know where on the server the player is
+            reports.newReport(p.getUniqueId(), server, "", 0, 0, 0, body).whenComplete((r, ex) -> {
+                if (ex != null) {
+                    send(sender, ArcaneColor.CONTENT, "Your report could not be filed right now. Please try again later.");
+                    return;
+                }
+                send(sender, ArcaneColor.CONTENT, "Your report #" + r.getId() + " has been filed. Thank you!");
+
+                BaseComponent notice = line(r);
+                notice.addExtra(" (new report)");
+                for (ProxiedPlayer staff : ProxyServer.getInstance().getPlayers()) {
+                    if (staff.hasPermission(STAFF_PERMISSION))
+                        send(staff, notice);
+                }
+                ProxyServer.getInstance().getConsole().sendMessage(notice);
+            });
+        }
+
+        @Override
+        public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+            return Collections.emptyList();
+        }
+    }
+
+    public class Reports extends Command implements TabExecutor {
+        public Reports() {
+            super("reports", STAFF_PERMISSION);
+        }
+
+        @Override
+        public void execute(CommandSender sender, String[] args) {
+            if (args.length == 0 || isNumber(args[0])) {
+                int count = args.length == 0 ? DEFAULT_LIST : Math.min(MAX_LIST, Math.max(1, Integer.parseInt(args[0])));
+                list(sender, count);
+                return;
+            }
+
+            String sub = args[0].toLowerCase();
+            if (args.length < 2 || !isNumber(args[1])
+                    || (sub.equals("priority") && args.length < 3)) {
+                send(sender, ArcaneText.usage("/reports [count] | view|close|reopen <id> | priority <id> <low|normal|high>"));
+                return;
+            }
+            int id = Integer.parseInt(args[1]);
+
+            CompletableFuture<Boolean> done;
+            switch (sub) {
+                case "view":
+                    reports.getReport(id).thenAccept(r -> {
+                        if (r == null)
+                            send(sender, ArcaneColor.CONTENT, "There is no report #" + id);
+                        else
+                            view(sender, r);
+                    });
+                    return;
+                case "close":
+                    done = reports.updateClosed(id, true);
+                    break;
+                case "reopen":
+                    done = reports.updateClosed(id, false);
+                    break;
+                case "priority":
+                    ReportDatabase.Priority priority;
+                    try {
+                        priority = ReportDatabase.Priority.valueOf(args[2].toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        send(sender, ArcaneText.usage("/reports priority <id> <low|normal|high>"));
+                        return;
+                    }
+                    done = reports.updatePriority(id, priority);
+                    break;
+                default:
+                    send(sender, ArcaneText.usage("/reports [count] | view|close|reopen <id> | priority <id> <low|normal|high>"));
+                    return;
+            }
+
+            done.thenAccept(ok -> send(sender, ArcaneColor.CONTENT, ok
+                    ? "Report #" + id + " updated"
+                    : "There is no open report #" + id));
+        }
+
+        @Override
+        public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
+            if (args.length == 1)
+                return TabCompletePreset.argStartsWith(args, Arrays.asList("view", "close", "reopen", "priority"));
+            if (args.length == 3 && args[0].equalsIgnoreCase("priority"))
+                return TabCompletePreset.argStartsWith(args, Arrays.asList("low", "normal", "high"));
+            return Collections.emptyList();
+        }
+    }
+
+    private void list(CommandSender sender, int count) {
+        List<ReportDatabase.Report> top = reports.getTopOpen(count);
+        send(sender, ArcaneColor.HEADING, "Open reports: " + reports.getOpenCount()
+                + (top.isEmpty() ? "" : ", showing top " + top.size()));
+        for (ReportDatabase.Report r : top)
+            send(sender, line(r));
+    }
+
+    private void view(CommandSender sender, ReportDatabase.Report r) {
+        send(sender, line(r));
+        ReportDatabase.Location l = r.getLocation();
+        String where = l.getWorld().isEmpty()
+                ? l.getServer()
+                : l.getServer() + " " + l.getWorld() + " " + l.getX() + " " + l.getY() + " " + l.getZ();
+        send(sender, ArcaneColor.CONTENT, " Where: " + where);
+        send(sender, ArcaneColor.CONTENT, " Filed: " + r.getOpen() + ", last updated: " + r.getLast());
+        send(sender, ArcaneColor.CONTENT, " " + (r.isClosed() ? "Closed" : "Open") + ", priority " + r.getPriority());
+    }
+
+    private BaseComponent line(ReportDatabase.Report r) {
+        String name = mpModule.getName(r.getUser());
+        BaseComponent ret = new TextComponent("#" + r.getId());
+        ret.setColor(ArcaneColor.FOCUS);
+        ret.setClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/reports view " + r.getId()));
+        BaseComponent rest = new TextComponent(" [" + r.getPriority() + "] "
+                + (name == null ? r.getUser().toString() : name)
+                + (r.getLocation().getServer().isEmpty() ? "" : " on " + r.getLocation().getServer())
+                + ": " + r.getBody());
+        rest.setColor(ArcaneColor.CONTENT);
+        ret.addExtra(rest);
+        return ret;
+    }
+
+    private static boolean isNumber(String s) {
+        try {
+            Integer.parseInt(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void send(CommandSender sender, ChatColor color, String msg) {
+        BaseComponent send = new TextComponent(msg);
+        send.setColor(color);
+        send(sender, send);
+    }
+
+    private static void send(CommandSender sender, BaseComponent send) {
+        if (sender instanceof ProxiedPlayer)
+            ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, send);
+        else
+            sender.sendMessage(send);
+    }
+}
@@ -61,10 +61,7 @@ public class SeenCommands {
             if (target == null) {
                 uuid = module.getUUID(args[0]);
                 if (uuid == null) {
-                    if (sender instanceof ProxiedPlayer)
-                        ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, ArcaneText.playerNotFound());
-                    else
-                        sender.sendMessage(ArcaneText.playerNotFound());
+                    NameSuggestions.sendNotFound(sender, args[0], "/" + getName() + " ");
                     return;
                 }
             } else {
@@ -159,10 +156,7 @@ public class SeenCommands {
             if (target == null) {
                 uuid = module.getUUID(args[0]);
                 if (uuid == null) {
-                    if (sender instanceof ProxiedPlayer)
-                        ((ProxiedPlayer) sender).sendMessage(ChatMessageType.SYSTEM, ArcaneText.playerNotFound());
-                    else
-                        sender.sendMessage(ArcaneText.playerNotFound());
+                    NameSuggestions.sendNotFound(sender, args[0], "/" + getName() + " ");
                     return;
                 }
             } else {
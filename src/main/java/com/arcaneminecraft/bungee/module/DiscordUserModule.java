@@ -6,7 +6,9 @@ import net.dv8tion.jda.core.entities.Member;
 
 import java.security.SecureRandom;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DiscordUserModule deals with all the things that interact with
@@ -17,8 +19,10 @@ import java.util.UUID;
 public class DiscordUserModule {
     private static final SecureRandom rnd = new SecureRandom();
 
-    private HashMap<Long, UUID> discordToMinecraft = new HashMap<>();
-    private HashMap<UUID, Long> minecraftToDiscord = new HashMap<>();
+    private volatile Map<Long, UUID> discordToMinecraft = new ConcurrentHashMap<>();
+    private volatile Map<UUID, Long> minecraftToDiscord = new ConcurrentHashMap<>();
+    // Links made or removed since the last load, with 0 for removed; replayed over the next load
+    private final Map<UUID, Long> changed = new HashMap<>();
 
     private HashMap<UUID, Integer> mcToken = new HashMap<>();
     private HashMap<Long, Integer> dcToken = new HashMap<>();
@@ -27,12 +31,49 @@ public class DiscordUserModule {
         return ArcaneBungee.getInstance().getMinecraftPlayerModule();
     }
 
-    public void put(UUID uuid, long id) {
+    public synchronized void put(UUID uuid, long id) {
+        UUID oldUuid = discordToMinecraft.put(id, uuid);
+        if (oldUuid != null && !oldUuid.equals(uuid))
+            minecraftToDiscord.remove(oldUuid);
         Long oldId = minecraftToDiscord.put(uuid, id);
-        if (oldId != null)
+        if (oldId != null && oldId != id)
             discordToMinecraft.remove(oldId);
+        changed.put(uuid, id);
+    }
 
-        discordToMinecraft.put(id, uuid);
+    private synchronized void remove(UUID uuid, long id) {
+        minecraftToDiscord.remove(uuid);
+        discordToMinecraft.remove(id);
+        changed.put(uuid, 0L);
+    }
+
+    /**
+     * Replaces all links with a fully loaded set in a single step.
+     * Links made or removed while the load was running are kept.
+     */
+    public synchronized void load(Map<UUID, Long> links) {
+        Map<Long, UUID> dToM = new ConcurrentHashMap<>();
+        Map<UUID, Long> mToD = new ConcurrentHashMap<>();
+
+        for (Map.Entry<UUID, Long> e : links.entrySet()) {
+            mToD.put(e.getKey(), e.getValue());
+            dToM.put(e.getValue(), e.getKey());
+        }
+
+        for (Map.Entry<UUID, Long> e : changed.entrySet()) {
+            Long oldId = e.getValue() == 0 ? mToD.remove(e.getKey()) : mToD.put(e.getKey(), e.getValue());
+            if (oldId != null)
+                dToM.remove(oldId);
+            if (e.getValue() != 0) {
+                UUID oldUuid = dToM.put(e.getValue(), e.getKey());
+                if (oldUuid != null && !oldUuid.equals(e.getKey()))
+                    mToD.remove(oldUuid);
+            }
+        }
+        changed.clear();
+
+        this.discordToMinecraft = dToM;
+        this.minecraftToDiscord = mToD;
     }
 
     private DiscordBot getDB() {
@@ -103,24 +144,24 @@ public class DiscordUserModule {
     }
 
     public long unlink(UUID uuid) {
-        Long id = minecraftToDiscord.remove(uuid);
+        Long id = minecraftToDiscord.get(uuid);
         if (id == null)
             return 0;
 
+        remove(uuid, id);
         getDB().userUnlink(id);
         getMPModule().setDiscord(uuid, 0);
-        discordToMinecraft.remove(id);
         return id;
     }
 
     public UUID unlink(long id) {
-        UUID uuid = discordToMinecraft.remove(id);
+        UUID uuid = discordToMinecraft.get(id);
         if (uuid == null)
             return null;
 
+        remove(uuid, id);
         getDB().userUnlink(id);
         getMPModule().setDiscord(uuid, 0);
-        minecraftToDiscord.remove(uuid);
         return uuid;
     }
 
@@ -1,38 +1,380 @@
 package com.arcaneminecraft.bungee.module;
 
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.module.data.AfkRegistry;
 import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
-import com.arcaneminecraft.bungee.storage.SQLDatabase;
+import com.arcaneminecraft.bungee.module.data.DirectoryData;
+import com.arcaneminecraft.bungee.module.data.DirectorySnapshot;
+import com.arcaneminecraft.bungee.module.data.NameFilter;
+import com.arcaneminecraft.bungee.module.data.NameHistory;
+import com.arcaneminecraft.bungee.module.data.OfflinePlayerCache;
+import com.arcaneminecraft.bungee.module.data.PlayerDirectory;
+import com.arcaneminecraft.bungee.module.data.TieredDirectory;
+import com.arcaneminecraft.bungee.storage.PlayerStore;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 public class MinecraftPlayerModule {
+    private static final int SUGGESTIONS = 5;
+    private static final double FILTER_RATE = 0.01;
     private final HashMap<UUID, ArcanePlayer> onlinePlayerCache = new HashMap<>();
-    private final HashMap<String, UUID> allNameToUuid = new HashMap<>();
-    private final HashMap<UUID, String> allUuidToName = new HashMap<>();
-    private final ArrayList<ProxiedPlayer> afkList = new ArrayList<>();
+    // Replaced whole by load() and demote(), so readers see either the old or the new directory
+    private volatile TieredDirectory directory = new TieredDirectory();
+    // Held while a directory is built, so only one writes the cold file at a time
+    private final Object rebuild = new Object();
+    private final NameHistory history = new NameHistory();
+    // Null until the store has loaded every player; until then nothing is turned away
+    private volatile NameFilter filter;
+    private final AtomicLong filterRejected = new AtomicLong();
+    private final AtomicLong filterFalsePositives = new AtomicLong();
+    private final AfkRegistry afk = new AfkRegistry();
+    private final File snapshotFile = new File(ArcaneBungee.getInstance().getDataFolder(), "players.dat");
+    private final File coldFile = new File(ArcaneBungee.getInstance().getDataFolder(), "players-cold.dat");
+    // Players not seen for this long are kept on disk; 0 keeps everyone in memory
+    private final long hotAge = TimeUnit.DAYS.toMillis(Math.max(0, ArcaneBungee.getInstance().getConfig().getInt("player-directory.hot-days", 90)));
+    private volatile int maxId = 0;
+    private volatile long snapshotCreated = 0;
+    // Completes once the snapshot has been read, or right away if none is read
+    private volatile CompletableFuture<Void> snapshotLoad = CompletableFuture.completedFuture(null);
+    // Held while writing the snapshot, so the load task and shutdown don't write it at once
+    private final Object snapshotWrite = new Object();
+    private final int tabCompleteLimit = Math.max(1, ArcaneBungee.getInstance().getConfig().getInt("tab-complete-players", 50));
+    private final OfflinePlayerCache offlineCache = new OfflinePlayerCache(
+            Math.max(0, ArcaneBungee.getInstance().getConfig().getInt("mariadb.player-cache.size", 500)),
+            ArcaneBungee.getInstance().getConfig().getInt("mariadb.player-cache.ttl", 300), TimeUnit.SECONDS);
+
+    private PlayerStore getStore() {
+        return ArcaneBungee.getInstance().getPlayerStore();
+    }
+
+    /**
+     * Adds or renames the player and marks them as seen now, which keeps them in memory.
+     */
+    public synchronized void put(UUID uuid, String name) {
+        String old = directory.put(uuid, name, System.currentTimeMillis());
+        NameFilter f = filter;
+        if (f != null && !name.equals(old)) {
+            f.add(uuid);
+            f.add(name);
+        }
+        // The store keeps its own history; this keeps lookups right until the next load
+        if (old != null && !old.equalsIgnoreCase(name))
+            history.add(uuid, old, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a name the player used before, as loaded from the store.
+     * @param changed when they stopped using it, in milliseconds
+     */
+    public synchronized void addPastName(UUID uuid, String name, long changed) {
+        history.add(uuid, name, changed);
+        NameFilter f = filter;
+        if (f != null)
+            f.add(name);
+    }
+
+    /**
+     * @return names the player used before, most recent first, not counting their current name
+     */
+    public List<String> getPastNames(UUID uuid) {
+        String current = getName(uuid);
+        List<String> ret = new ArrayList<>();
+        for (NameHistory.Entry e : history.getPastNames(uuid)) {
+            if (!e.getName().equalsIgnoreCase(current))
+                ret.add(e.getName());
+        }
+        return ret;
+    }
+
+    /**
+     * @return past names containing the query, ignoring case, most recent first
+     */
+    public List<NameHistory.Entry> findPastNames(String query, int limit) {
+        return history.search(query, limit);
+    }
+
+    public void put(UUID uuid, String name, int id) {
+        put(uuid, name);
+        updateMaxId(id);
+    }
+
+    /**
+     * Replaces the name directory with a fully loaded one in a single step.
+     * Players not seen for the configured number of days go to disk.
+     * Players put while the load was running are kept.
+     */
+    public void load(DirectoryData data) {
+        synchronized (rebuild) {
+            TieredDirectory next;
+            try {
+                next = TieredDirectory.build(data, cutoff(), coldFile);
+            } catch (IOException e) {
+                ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Could not write " + coldFile.getName()
+                        + "; keeping every player in memory", e);
+                next = TieredDirectory.inMemory(data);
+            }
+
+            synchronized (this) {
+                directory.forEachHot(next::put);
+                this.directory = next;
+                updateMaxId(data.getMaxId());
+            }
+            logDirectory(next);
+        }
+    }
+
+    /**
+     * Moves players not seen for the configured number of days from memory to disk.
+     * Does nothing if nobody is due to move.
+     */
+    public void demote() {
+        long cutoff = cutoff();
+        if (cutoff == 0)
+            return;
+
+        synchronized (rebuild) {
+            TieredDirectory current = directory;
+            int due = current.countHotSeenBefore(cutoff);
+            if (due == 0)
+                return;
+
+            long start = System.currentTimeMillis();
+            TieredDirectory next;
+            try {
+                next = TieredDirectory.build(current.toData(), cutoff, coldFile);
+            } catch (IOException e) {
+                ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Could not write " + coldFile.getName(), e);
+                return;
+            }
+
+            synchronized (this) {
+                // Players put while this ran; last seen is kept to the minute
+                current.forEachHot((uuid, name, seen) -> {
+                    if (seen >= start - 60000)
+                        next.put(uuid, name, seen);
+                });
+                this.directory = next;
+            }
+            ArcaneBungee.getInstance().getLogger().info("Moved " + due + " players to disk in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            logDirectory(next);
+        }
+    }
+
+    /**
+     * @return last seen time before which players are kept on disk, or 0 if all are kept in memory
+     */
+    private long cutoff() {
+        return hotAge == 0 ? 0 : System.currentTimeMillis() - hotAge;
+    }
+
+    private void logDirectory(TieredDirectory dir) {
+        ArcaneBungee.getInstance().getLogger().info("Player directory holds " + dir.getHotSize()
+                + " players in memory in about " + dir.getFootprint() / 1024 + " KB and "
+                + dir.getColdSize() + " on disk in " + dir.getColdFileSize() / 1024 + " KB");
+    }
+
+    /**
+     * @return the name directory, for its statistics
+     */
+    public TieredDirectory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Builds the filter of known names and UUIDs from the directory and name history.
+     * Called by the store once the directory holds every player; later players are added as they are put.
+     */
+    public synchronized void buildNameFilter() {
+        TieredDirectory dir = directory;
+        // Room for a good number of new players before the rate starts to climb
+        int expected = dir.size() + history.size();
+        NameFilter f = new NameFilter(expected + expected / 4 + 1024, FILTER_RATE);
+        dir.forEach((uuid, name, seen) -> {
+            f.add(uuid);
+            f.add(name);
+        });
+        history.forEachName(f::add);
+
+        this.filter = f;
+        ArcaneBungee.getInstance().getLogger().info(String.format(
+                "Name filter holds %d entries in %d KB, false positive rate about %.2f%%",
+                f.getAdded(), f.getFootprint() / 1024, f.getFalsePositiveRate() * 100));
+    }
+
+    /**
+     * @return the name filter, or null if the store has not finished loading
+     */
+    public NameFilter getNameFilter() {
+        return filter;
+    }
+
+    /**
+     * @return false only if nobody has ever used the name, ignoring case
+     */
+    public boolean mightBeKnown(String name) {
+        NameFilter f = filter;
+        if (f == null || f.mightContain(name))
+            return true;
+        filterRejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return false only if the player has never joined
+     */
+    public boolean mightBeKnown(UUID uuid) {
+        NameFilter f = filter;
+        if (f == null || f.mightContain(uuid))
+            return true;
+        filterRejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return lookups the name filter turned away without going further
+     */
+    public long getFilterRejected() {
+        return filterRejected.get();
+    }
 
-    private SQLDatabase getSQLDatabase() {
-        return SQLDatabase.getInstance();
+    /**
+     * @return lookups the name filter let through that then found nobody
+     */
+    public long getFilterFalsePositives() {
+        return filterFalsePositives.get();
     }
 
-    public void put(UUID uuid, String name) {
-        String oldName = allUuidToName.put(uuid, name);
-        if (oldName != null)
-            allNameToUuid.remove(oldName.toLowerCase());
+    private synchronized void updateMaxId(int id) {
+        if (id > maxId)
+            maxId = id;
+    }
 
-        allNameToUuid.put(name.toLowerCase(), uuid);
+    /**
+     * @return highest player id seen so far
+     */
+    public int getMaxId() {
+        return maxId;
     }
 
+    /**
+     * Starts loading the directory saved by {@link #saveSnapshot()} on another thread,
+     * so names resolve before the database load finishes without holding up startup.
+     */
+    public void loadSnapshot() {
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        this.snapshotLoad = load;
+        ProxyServer.getInstance().getScheduler().runAsync(ArcaneBungee.getInstance(), () -> {
+            try {
+                readSnapshot();
+            } finally {
+                load.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Waits for {@link #loadSnapshot()} to finish, if it was started.
+     */
+    public void awaitSnapshot() {
+        snapshotLoad.join();
+    }
+
+    private void readSnapshot() {
+        long start = System.currentTimeMillis();
+        DirectorySnapshot snapshot;
+        try {
+            snapshot = DirectorySnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Could not read player directory snapshot", e);
+            return;
+        }
+        if (snapshot == null)
+            return;
+
+        load(snapshot.getData());
+        updateMaxId(snapshot.getLastId());
+        snapshotCreated = snapshot.getCreated();
+
+        ArcaneBungee.getInstance().getLogger().info("Loaded " + snapshot.getData().size()
+                + " players from snapshot in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * @return when the loaded snapshot was written, or 0 if none was loaded
+     */
+    public long getSnapshotCreated() {
+        return snapshotCreated;
+    }
+
+    /**
+     * Writes the current name directory to the plugin data folder.
+     * Waits for a snapshot still being loaded first, so a partly loaded directory never replaces it.
+     */
+    public void saveSnapshot() {
+        awaitSnapshot();
+        synchronized (snapshotWrite) {
+            long created = System.currentTimeMillis();
+            int lastId = maxId;
+
+            TieredDirectory dir = directory;
+            DirectoryData data = new DirectoryData(dir.size());
+            dir.forEach((uuid, name, seen) ->
+                    data.add(0, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), name, seen));
+
+            try {
+                DirectorySnapshot.write(snapshotFile, created, lastId, data);
+            } catch (IOException e) {
+                ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Could not write player directory snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of every known name
+     */
     public Collection<String> getAllNames() {
-        return allUuidToName.values();
+        return directory.getNames();
+    }
+
+    /**
+     * @return up to the configured number of names starting with the prefix, ignoring case, in order
+     */
+    public List<String> getNamesStartingWith(String prefix) {
+        return directory.getNamesStartingWith(prefix, tabCompleteLimit);
+    }
+
+    /**
+     * Finds names containing the query, ignoring case. See {@link TieredDirectory#search}.
+     */
+    public PlayerDirectory.SearchResult findNames(String query, int limit, long timeout) {
+        return directory.search(query, limit, timeout);
+    }
+
+    /**
+     * Finds names within two edits of the given one, for "did you mean".
+     * Names one edit away are looked for first, since that is quicker and usually enough.
+     * Only players kept in memory are suggested.
+     * @return up to five names, closest first
+     */
+    public List<String> getSimilarNames(String name) {
+        List<String> ret = directory.getSimilarNames(name, 1, SUGGESTIONS);
+        if (ret.size() < SUGGESTIONS)
+            ret = directory.getSimilarNames(name, 2, SUGGESTIONS);
+        return ret;
     }
 
     public String getName(UUID uuid) {
-        return allUuidToName.get(uuid);
+        return directory.getName(uuid);
     }
 
     public String getDisplayName(UUID uuid) {
@@ -43,17 +385,34 @@ public class MinecraftPlayerModule {
             return p.getDisplayName();
     }
 
+    /**
+     * Resolves a current name, a UUID string, or failing those a past name.
+     * Players in memory are looked up first, then those on disk.
+     * @return the player's UUID, or null if the name is unknown
+     */
     public UUID getUUID(String name) {
-        UUID uuid = allNameToUuid.get(name.toLowerCase());
-
-        if (uuid == null) {
-            try {
-                UUID test = UUID.fromString(name);
-                if (allUuidToName.containsKey(test))
-                    uuid = test;
-            } catch (IllegalArgumentException ignore) {}
-        }
-
+        TieredDirectory dir = directory;
+        UUID uuid = dir.getHotUUID(name);
+        if (uuid != null)
+            return uuid;
+
+        try {
+            UUID test = UUID.fromString(name);
+            return dir.contains(test) ? test : null;
+        } catch (IllegalArgumentException ignore) {}
+
+        // Nothing on disk or in the history can match a name nobody ever used
+        if (!mightBeKnown(name))
+            return null;
+
+        uuid = dir.getColdUUID(name);
+        if (uuid != null)
+            return uuid;
+
+        // Whoever used the name last, if nobody has it now
+        uuid = history.getUUID(name);
+        if (uuid == null && filter != null)
+            filterFalsePositives.incrementAndGet();
         return uuid;
     }
 
@@ -61,14 +420,67 @@ public class MinecraftPlayerModule {
         return onlinePlayerCache.get(uuid);
     }
 
+    /**
+     * Gets the player's data whether or not they are online.
+     * Offline players are read from the cache, then from the database.
+     * @return future of the data, or of null if the player never joined
+     */
+    public CompletableFuture<ArcanePlayer> fetchPlayerData(UUID uuid) {
+        ArcanePlayer data = getPlayerData(uuid);
+        if (data != null)
+            return CompletableFuture.completedFuture(data);
+        if (!mightBeKnown(uuid))
+            return CompletableFuture.completedFuture(null);
+
+        return offlineCache.get(uuid, getStore()::fetchPlayerData);
+    }
+
+    /**
+     * Gets many players' data; offline players not in the cache are read with one bulk query.
+     * @return data by UUID; players that never joined are left out
+     */
+    public CompletableFuture<Map<UUID, ArcanePlayer>> fetchPlayerData(Collection<UUID> uuids) {
+        Map<UUID, ArcanePlayer> ret = new HashMap<>();
+        List<UUID> toLoad = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            ArcanePlayer data = getPlayerData(uuid);
+            if (data == null) {
+                CompletableFuture<ArcanePlayer> cached = offlineCache.getIfPresent(uuid);
+                if (cached != null && cached.isDone() && !cached.isCompletedExceptionally())
+                    data = cached.join();
+            }
+            if (data != null)
+                ret.put(uuid, data);
+            else if (mightBeKnown(uuid))
+                toLoad.add(uuid);
+        }
+
+        if (toLoad.isEmpty())
+            return CompletableFuture.completedFuture(ret);
+
+        long[] generations = offlineCache.getGenerations();
+        return getStore().fetchPlayerData(toLoad).thenApply(loaded -> {
+            for (ArcanePlayer p : loaded.values())
+                offlineCache.put(p, generations);
+            ret.putAll(loaded);
+            return ret;
+        });
+    }
+
+    public OfflinePlayerCache getOfflineCache() {
+        return offlineCache;
+    }
+
     public CompletableFuture<ArcanePlayer> onJoin(ProxiedPlayer p) {
-        return getSQLDatabase().playerJoin(p).thenApply(arcanePlayer -> {
+        return getStore().playerJoin(p).thenApply(arcanePlayer -> {
             if (arcanePlayer == null) {
                 return null;
             }
             onlinePlayerCache.put(p.getUniqueId(), arcanePlayer);
-            if (!p.getName().equals(arcanePlayer.getOldName()))
-                put(p.getUniqueId(), p.getName());
+            offlineCache.invalidate(p.getUniqueId());
+            updateMaxId(arcanePlayer.getId());
+            // Also marks them as seen, bringing them back into memory
+            put(p.getUniqueId(), p.getName());
 
             return arcanePlayer;
         });
@@ -76,19 +488,39 @@ public class MinecraftPlayerModule {
 
     public void onLeave(ProxiedPlayer p) {
         ArcanePlayer arcanePlayer = onlinePlayerCache.remove(p.getUniqueId());
-        getSQLDatabase().updatePlayer(arcanePlayer);
+        // Null if they left before their data finished loading; there is nothing to save
+        if (arcanePlayer != null)
+            getStore().updatePlayer(arcanePlayer);
+        offlineCache.invalidate(p.getUniqueId());
+        if (arcanePlayer != null)
+            put(p.getUniqueId(), p.getName());
     }
 
-    public void setAFK(ProxiedPlayer p) {
-        afkList.add(p);
+    public void setAFK(UUID uuid) {
+        afk.set(uuid);
     }
 
-    public void unsetAFK(ProxiedPlayer p) {
-        afkList.remove(p);
+    public void unsetAFK(UUID uuid) {
+        afk.unset(uuid);
     }
 
+    public AfkRegistry getAFK() {
+        return afk;
+    }
+
+    /**
+     * @return a copy of the online players who are AFK
+     * @deprecated use {@link #getAFK()}
+     */
+    @Deprecated
     public List<ProxiedPlayer> getAFKList() {
-        return afkList;
+        List<ProxiedPlayer> ret = new ArrayList<>(afk.size());
+        for (UUID uuid : afk.getAll().keySet()) {
+            ProxiedPlayer p = ProxyServer.getInstance().getPlayer(uuid);
+            if (p != null)
+                ret.add(p);
+        }
+        return ret;
     }
 
     public CompletableFuture<Timestamp> getFirstSeen(UUID uuid) {
@@ -97,7 +529,7 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getFirstSeen());
         }
 
-        return getSQLDatabase().getFirstSeen(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? null : p.getFirstSeen());
     }
 
     public CompletableFuture<Timestamp> getLastSeen(UUID uuid) {
@@ -106,7 +538,7 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getLastLeft());
         }
 
-        return getSQLDatabase().getLastSeen(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? null : p.getLastLeft());
     }
 
     public void setTimeZone(UUID uuid, TimeZone timeZone) {
@@ -116,7 +548,8 @@ public class MinecraftPlayerModule {
             return;
         }
 
-        SQLDatabase.getInstance().setTimeZone(uuid, timeZone);
+        getStore().setTimeZone(uuid, timeZone);
+        offlineCache.invalidate(uuid);
     }
 
     public CompletableFuture<TimeZone> getTimeZone(UUID uuid) {
@@ -125,16 +558,19 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getTimezone());
         }
 
-        return getSQLDatabase().getTimeZone(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? null : p.getTimezone());
     }
 
     public void setDiscord(UUID uuid, long id) {
         ArcanePlayer data = getPlayerData(uuid);
         if (data != null) {
             data.setDiscord(id);
+            // Written through below; don't write it again on leave
+            data.clearDirty(ArcanePlayer.DISCORD);
         }
 
-        SQLDatabase.getInstance().setDiscord(uuid, id);
+        getStore().setDiscord(uuid, id);
+        offlineCache.invalidate(uuid);
     }
 
     public CompletableFuture<Long> getDiscord(UUID uuid) {
@@ -143,7 +579,7 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getDiscord());
         }
 
-        return getSQLDatabase().getDiscord(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? 0L : p.getDiscord());
     }
 
     public boolean setReddit(UUID uuid, String reddit) {
@@ -154,7 +590,8 @@ public class MinecraftPlayerModule {
                 return true;
             }
 
-            SQLDatabase.getInstance().setReddit(uuid, null);
+            getStore().setReddit(uuid, null);
+            offlineCache.invalidate(uuid);
             return true;
         }
 
@@ -172,7 +609,8 @@ public class MinecraftPlayerModule {
             return true;
         }
 
-        SQLDatabase.getInstance().setReddit(uuid, reddit);
+        getStore().setReddit(uuid, reddit);
+        offlineCache.invalidate(uuid);
         return true;
     }
 
@@ -182,7 +620,7 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getReddit());
         }
 
-        return getSQLDatabase().getReddit(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? null : p.getReddit());
     }
 
     public void setOptions(UUID uuid, int options) {
@@ -192,7 +630,8 @@ public class MinecraftPlayerModule {
             return;
         }
 
-        SQLDatabase.getInstance().setOption(uuid, options);
+        getStore().setOption(uuid, options);
+        offlineCache.invalidate(uuid);
     }
 
     public CompletableFuture<Integer> getOptions(UUID uuid) {
@@ -201,6 +640,6 @@ public class MinecraftPlayerModule {
             return CompletableFuture.completedFuture(getPlayerData(uuid).getOptions());
         }
 
-        return SQLDatabase.getInstance().getOptions(uuid);
+        return fetchPlayerData(uuid).thenApply(p -> p == null ? 0 : p.getOptions());
     }
 }
@@ -1,16 +1,38 @@
 package com.arcaneminecraft.bungee.module;
 
-import com.arcaneminecraft.bungee.storage.SQLDatabase;
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import net.md_5.bungee.api.chat.BaseComponent;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
 
 public class NewsModule {
+    public static final int PAGE_SIZE = 8;
+    // Pages kept in the ring
+    private static final int CACHED_PAGES = 8;
+
     private Entry latest;
+    // Page n (from 1) is kept in slot (n - 1) % CACHED_PAGES, replacing whichever page was there
+    private final Page[] pages = new Page[CACHED_PAGES];
+    // Bumped whenever news is posted, so fetches started before then are not cached
+    private int generation = 0;
 
     public synchronized void newNews(UUID author, String content) {
-        SQLDatabase.getInstance().addNews(author, content);
+        invalidate();
+        // Pages read between now and the write landing would miss it
+        ArcaneBungee.getInstance().getNewsStore().addNews(author, content).whenComplete((v, ex) -> {
+            invalidate();
+            if (ex != null)
+                ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Could not save news: " + content, ex);
+        });
         setLatest(new Entry(author, Timestamp.from(Instant.now()), content));
     }
 
@@ -22,19 +44,112 @@ public class NewsModule {
         return latest;
     }
 
+    private synchronized void invalidate() {
+        generation++;
+        for (int i = 0; i < CACHED_PAGES; i++)
+            pages[i] = null;
+    }
+
+    /**
+     * Gets a page of news history, newest first, from the ring if it is there.
+     * Finding where a page starts needs the page before it, so deep pages fetch those too.
+     * @param page page number starting at 1
+     * @return the page, empty if past the end, or null if it could not be read
+     */
+    public CompletableFuture<Page> getPage(int page) {
+        int gen;
+        synchronized (this) {
+            Page p = pages[(page - 1) % CACHED_PAGES];
+            if (p != null && p.number == page)
+                return CompletableFuture.completedFuture(p);
+            gen = generation;
+        }
+
+        CompletableFuture<Integer> before = page == 1
+                ? CompletableFuture.completedFuture(Integer.MAX_VALUE)
+                : getPage(page - 1).thenApply(prev -> prev == null ? null : prev.getLastId());
+
+        return before.thenCompose(beforeId -> {
+            if (beforeId == null)
+                return CompletableFuture.completedFuture(null);
+            if (beforeId == 0)
+                // Previous page was empty
+                return CompletableFuture.completedFuture(new Page(page, Collections.emptyList()));
+            return ArcaneBungee.getInstance().getNewsStore().fetchNews(beforeId, PAGE_SIZE)
+                    .thenApply(entries -> entries == null ? null : store(gen, new Page(page, entries)));
+        });
+    }
+
+    private synchronized Page store(int gen, Page p) {
+        if (gen == generation)
+            pages[(p.number - 1) % CACHED_PAGES] = p;
+        return p;
+    }
+
+    public static final class Page {
+        private final int number;
+        private final List<Entry> entries;
+        private final Map<String, BaseComponent> rendered = new ConcurrentHashMap<>();
+
+        private Page(int number, List<Entry> entries) {
+            this.number = number;
+            this.entries = entries;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
 
+        /**
+         * @return whether there may be another page after this one
+         */
+        public boolean isFull() {
+            return entries.size() == PAGE_SIZE;
+        }
+
+        /**
+         * @return ID of the oldest entry, or 0 if the page is empty
+         */
+        private int getLastId() {
+            return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).getId();
+        }
+
+        /**
+         * Renders the page once per key, e.g. per locale and time zone, and reuses it after that.
+         */
+        public BaseComponent render(String key, Function<Page, BaseComponent> renderer) {
+            return rendered.computeIfAbsent(key, k -> renderer.apply(this));
+        }
+    }
 
     public static final class Entry {
+        private final int id;
         private final UUID author;
         private final Timestamp time;
         private final String contents;
 
         public Entry(UUID author, Timestamp time, String contents) {
+            this(0, author, time, contents);
+        }
+
+        /**
+         * @param id ID in the news store, for paging
+         */
+        public Entry(int id, UUID author, Timestamp time, String contents) {
+            this.id = id;
             this.author = author;
             this.time = time;
             this.contents = contents;
         }
 
+        public int getId() {
+            return id;
+        }
+
         public UUID getAuthor() {
             return author;
         }
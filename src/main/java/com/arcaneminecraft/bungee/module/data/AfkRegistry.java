@@ -0,0 +1,74 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Players who are AFK, and since when. Safe to use from any thread.
+ */
+public class AfkRegistry {
+    // Player to when they went AFK, in epoch milliseconds
+    private final Map<UUID, Long> since = new ConcurrentHashMap<>();
+
+    /**
+     * Marks the player AFK. If they already are, they keep their original time.
+     */
+    public void set(UUID uuid) {
+        since.putIfAbsent(uuid, System.currentTimeMillis());
+    }
+
+    public void unset(UUID uuid) {
+        since.remove(uuid);
+    }
+
+    public boolean isAFK(UUID uuid) {
+        return since.containsKey(uuid);
+    }
+
+    /**
+     * @return when the player went AFK in epoch milliseconds, or 0 if they are not AFK
+     */
+    public long getSince(UUID uuid) {
+        Long t = since.get(uuid);
+        return t == null ? 0 : t;
+    }
+
+    /**
+     * @return milliseconds the player has been AFK for, or -1 if they are not AFK
+     */
+    public long getDuration(UUID uuid) {
+        Long t = since.get(uuid);
+        return t == null ? -1 : System.currentTimeMillis() - t;
+    }
+
+    /**
+     * @return number of players AFK
+     */
+    public int size() {
+        return since.size();
+    }
+
+    /**
+     * @return a copy of every AFK player and when they went AFK
+     */
+    public Map<UUID, Long> getAll() {
+        return new ConcurrentHashMap<>(since);
+    }
+
+    /**
+     * Formats a duration as its largest unit or two, such as "45s", "12m" or "3h 5m".
+     */
+    public static String formatDuration(long millis) {
+        long s = Math.max(0, millis / 1000);
+        if (s < 60)
+            return s + "s";
+        long m = s / 60;
+        if (m < 60)
+            return m + "m";
+        long h = m / 60;
+        if (h < 24)
+            return m % 60 == 0 ? h + "h" : h + "h " + m % 60 + "m";
+        return h % 24 == 0 ? h / 24 + "d" : h / 24 + "d " + h % 24 + "h";
+    }
+}
@@ -1,10 +1,17 @@
 package com.arcaneminecraft.bungee.module.data;
 
 import java.sql.Timestamp;
+import java.util.Objects;
 import java.util.TimeZone;
 import java.util.UUID;
 
 public class ArcanePlayer {
+    // Fields changed since the player was loaded, see getDirtyFields()
+    public static final int TIMEZONE = 1;
+    public static final int DISCORD = 1 << 1;
+    public static final int REDDIT = 1 << 2;
+    public static final int OPTIONS = 1 << 3;
+
     private final UUID uuid;
     private final int id;
     private final String oldName;
@@ -14,6 +21,7 @@ public class ArcanePlayer {
     private long discord;
     private String reddit;
     private int options;
+    private int dirty = 0;
 
     public ArcanePlayer(UUID uuid, int id, String oldName, Timestamp firstseen, Timestamp lastleft, TimeZone timezone, long discord, String reddit, int options) {
         this.uuid = uuid;
@@ -64,6 +72,8 @@ public class ArcanePlayer {
     }
 
     public void setTimeZone(TimeZone timezone) {
+        if (!Objects.equals(this.timezone, timezone))
+            dirty |= TIMEZONE;
         this.timezone = timezone;
     }
 
@@ -72,6 +82,8 @@ public class ArcanePlayer {
     }
 
     public void setDiscord(long discord) {
+        if (this.discord != discord)
+            dirty |= DISCORD;
         this.discord = discord;
     }
 
@@ -82,6 +94,8 @@ public class ArcanePlayer {
     }
 
     public void setReddit(String reddit) {
+        if (!Objects.equals(this.reddit, reddit))
+            dirty |= REDDIT;
         this.reddit = reddit;
     }
 
@@ -90,6 +104,22 @@ public class ArcanePlayer {
     }
 
     public void setOptions(int options) {
+        if (this.options != options)
+            dirty |= OPTIONS;
         this.options = options;
     }
+
+    /**
+     * @return bit mask of TIMEZONE, DISCORD, REDDIT and OPTIONS for fields set to a new value since loading
+     */
+    public int getDirtyFields() {
+        return dirty;
+    }
+
+    /**
+     * Marks fields as saved.
+     */
+    public void clearDirty(int fields) {
+        dirty &= ~fields;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+
+/**
+ * Players kept on disk rather than in memory, in a file sorted both ways and memory-mapped for reading.
+ * <pre>
+ * int magic "ABCD", int version, int count
+ * count * (long msb, long lsb, int offset)      sorted by UUID
+ * count * int offset                            sorted by lowercase name
+ * count * (long msb, long lsb, long lastSeen, byte length, byte[length] UTF-8 name), at the offsets above
+ * </pre>
+ * Lookups by UUID, name or name prefix are binary searches, so only the pages they touch are read in.
+ * Substring searches read every name. The file is never changed once written; moving players
+ * between memory and disk writes a new one in its place.
+ */
+public final class ColdDirectory {
+    private static final int MAGIC = 0x41424344;
+    private static final int VERSION = 1;
+    private static final int HEADER = 12;
+    private static final int UUID_ENTRY = 20;
+    // Name length and bytes, after msb, lsb and last seen
+    private static final int NAME = 24;
+
+    private static final ColdDirectory EMPTY = new ColdDirectory(null, 0);
+
+    private final MappedByteBuffer buf;
+    private final int count;
+    private final int byName;
+
+    private ColdDirectory(MappedByteBuffer buf, int count) {
+        this.buf = buf;
+        this.count = count;
+        this.byName = HEADER + count * UUID_ENTRY;
+    }
+
+    public static ColdDirectory empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Writes the given rows to a temporary file, moves it into place and maps it.
+     * @param rows indexes into data of the players to write
+     */
+    public static ColdDirectory write(File file, DirectoryData data, int[] rows, int count) throws IOException {
+        byte[][] names = new byte[data.size()][];
+        Integer[] nameOrder = new Integer[count];
+        Integer[] uuidOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            names[rows[i]] = data.getNameBytes(rows[i]);
+            nameOrder[i] = uuidOrder[i] = rows[i];
+        }
+        Arrays.sort(nameOrder, (a, b) -> compare(names[a], names[b]));
+        Arrays.sort(uuidOrder, (a, b) -> {
+            int c = Long.compare(data.getMostSignificantBits(a), data.getMostSignificantBits(b));
+            return c != 0 ? c : Long.compare(data.getLeastSignificantBits(a), data.getLeastSignificantBits(b));
+        });
+
+        // Records go in name order
+        int[] offsets = new int[data.size()];
+        long pos = HEADER + (long) count * (UUID_ENTRY + 4);
+        for (int row : nameOrder) {
+            offsets[row] = (int) pos;
+            pos += NAME + 1 + names[row].length;
+            if (pos > Integer.MAX_VALUE)
+                throw new IOException("Too many players for " + file);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int row : uuidOrder) {
+                out.writeLong(data.getMostSignificantBits(row));
+                out.writeLong(data.getLeastSignificantBits(row));
+                out.writeInt(offsets[row]);
+            }
+            for (int row : nameOrder)
+                out.writeInt(offsets[row]);
+            for (int row : nameOrder) {
+                out.writeLong(data.getMostSignificantBits(row));
+                out.writeLong(data.getLeastSignificantBits(row));
+                out.writeLong(data.getLastSeen(row));
+                out.writeByte(names[row].length);
+                out.write(names[row]);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    /**
+     * Maps a file written by {@link #write}. The mapping stays valid after the channel is closed.
+     */
+    public static ColdDirectory open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+                throw new IOException("Not a player directory file: " + file);
+            int count = buf.getInt(8);
+            if (HEADER + (long) count * (UUID_ENTRY + 4) > buf.capacity())
+                throw new IOException("Truncated player directory file: " + file);
+            return new ColdDirectory(buf, count);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return bytes of the mapped file
+     */
+    public long getFileSize() {
+        return buf == null ? 0 : buf.capacity();
+    }
+
+    /**
+     * @return the player's name, or null if they are not here
+     */
+    public String getName(UUID uuid) {
+        int offset = findUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return offset == -1 ? null : decode(offset);
+    }
+
+    public boolean contains(UUID uuid) {
+        return findUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) != -1;
+    }
+
+    /**
+     * @param skip players to pass over, given their UUID and name
+     * @return UUID of the most recently seen player with the name, ignoring case, or null if none
+     */
+    public UUID getUUID(String name, BiPredicate<UUID, String> skip) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        UUID ret = null;
+        long best = -1;
+        for (int i = lowerBound(key); i < count; i++) {
+            int offset = nameOffset(i);
+            if (compare(offset, key, key.length) != 0)
+                break;
+            UUID uuid = uuidAt(offset);
+            long seen = buf.getLong(offset + 16);
+            if (seen > best && !skip.test(uuid, name)) {
+                ret = uuid;
+                best = seen;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param skip players to pass over, given their UUID and name
+     * @return up to limit names starting with the prefix, ignoring case, in order
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit, BiPredicate<UUID, String> skip) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        List<String> ret = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(key); i < count && ret.size() < limit; i++) {
+            int offset = nameOffset(i);
+            if (!startsWith(offset, key))
+                break;
+            String name = decode(offset);
+            if (!skip.test(uuidAt(offset), name))
+                ret.add(name);
+        }
+        return ret;
+    }
+
+    /**
+     * Finds names containing the query, ignoring case, by reading every name.
+     * @param skip players to pass over, given their UUID and name
+     * @param deadline {@link System#nanoTime()} to stop searching at
+     * @return matches in case-insensitive order of name
+     */
+    public PlayerDirectory.SearchResult search(String query, int limit, long deadline, BiPredicate<UUID, String> skip) {
+        byte[] q = query.getBytes(StandardCharsets.UTF_8);
+        if (q.length == 0)
+            return new PlayerDirectory.SearchResult(Collections.emptyList(), true);
+
+        List<PlayerDirectory.Match> ret = new ArrayList<>();
+        byte[] name = new byte[255];
+        for (int i = 0; i < count; i++) {
+            if (ret.size() == limit || ((i & 0xFF) == 0xFF && System.nanoTime() > deadline))
+                return new PlayerDirectory.SearchResult(ret, false);
+
+            int offset = nameOffset(i);
+            int len = buf.get(offset + NAME) & 0xFF;
+            for (int j = 0; j < len; j++)
+                name[j] = buf.get(offset + NAME + 1 + j);
+            int[] offsets = find(name, len, q);
+            if (offsets == null)
+                continue;
+
+            String s = new String(name, 0, len, StandardCharsets.UTF_8);
+            UUID uuid = uuidAt(offset);
+            if (skip.test(uuid, s))
+                continue;
+            if (s.length() != len) {
+                // Not all ASCII; offsets are in bytes
+                for (int j = 0; j < offsets.length; j++)
+                    offsets[j] = new String(name, 0, offsets[j], StandardCharsets.UTF_8).length();
+            }
+            ret.add(new PlayerDirectory.Match(uuid, s, offsets, query.length()));
+        }
+        return new PlayerDirectory.SearchResult(ret, true);
+    }
+
+    /**
+     * Calls the action with every player, in order of name.
+     */
+    public void forEach(PlayerDirectory.Visitor action) {
+        for (int i = 0; i < count; i++) {
+            int offset = nameOffset(i);
+            action.accept(uuidAt(offset), decode(offset), buf.getLong(offset + 16));
+        }
+    }
+
+    private int findUuid(long m, long l) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int p = HEADER + mid * UUID_ENTRY;
+            int c = Long.compare(buf.getLong(p), m);
+            if (c == 0)
+                c = Long.compare(buf.getLong(p + 8), l);
+            if (c < 0)
+                lo = mid + 1;
+            else if (c > 0)
+                hi = mid - 1;
+            else
+                return buf.getInt(p + 16);
+        }
+        return -1;
+    }
+
+    /**
+     * @return first index by name not before the key
+     */
+    private int lowerBound(byte[] key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(nameOffset(mid), key, key.length) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int nameOffset(int i) {
+        return buf.getInt(byName + i * 4);
+    }
+
+    private UUID uuidAt(int offset) {
+        return new UUID(buf.getLong(offset), buf.getLong(offset + 8));
+    }
+
+    private String decode(int offset) {
+        int len = buf.get(offset + NAME) & 0xFF;
+        byte[] b = new byte[len];
+        for (int j = 0; j < len; j++)
+            b[j] = buf.get(offset + NAME + 1 + j);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the name at the offset with the first keyLen bytes of the key, ignoring ASCII case.
+     */
+    private int compare(int offset, byte[] key, int keyLen) {
+        int len = buf.get(offset + NAME) & 0xFF;
+        int start = offset + NAME + 1;
+        for (int i = 0; i < len && i < keyLen; i++) {
+            int c = (PlayerDirectory.lower(buf.get(start + i)) & 0xFF) - (PlayerDirectory.lower(key[i]) & 0xFF);
+            if (c != 0)
+                return c;
+        }
+        return len - keyLen;
+    }
+
+    private boolean startsWith(int offset, byte[] prefix) {
+        if ((buf.get(offset + NAME) & 0xFF) < prefix.length)
+            return false;
+        int start = offset + NAME + 1;
+        for (int i = 0; i < prefix.length; i++) {
+            if (PlayerDirectory.lower(buf.get(start + i)) != PlayerDirectory.lower(prefix[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            int c = (PlayerDirectory.lower(a[i]) & 0xFF) - (PlayerDirectory.lower(b[i]) & 0xFF);
+            if (c != 0)
+                return c;
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * @return where the query appears in the name without overlapping, or null if it does not
+     */
+    private static int[] find(byte[] name, int len, byte[] q) {
+        int[] ret = null;
+        int n = 0;
+        for (int i = 0; i + q.length <= len; ) {
+            int j = 0;
+            while (j < q.length && PlayerDirectory.lower(name[i + j]) == PlayerDirectory.lower(q[j]))
+                j++;
+            if (j < q.length) {
+                i++;
+                continue;
+            }
+            if (ret == null)
+                ret = new int[Math.max(1, len / q.length)];
+            ret[n++] = i;
+            i += q.length;
+        }
+        return ret == null ? null : Arrays.copyOf(ret, n);
+    }
+}
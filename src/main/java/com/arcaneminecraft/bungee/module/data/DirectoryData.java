@@ -0,0 +1,156 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Player directory rows (id, UUID, name, last seen) packed into two flat buffers:
+ * fixed-size rows, and names as UTF-8 bytes in a shared arena. Loading hundreds of thousands
+ * of players creates no object per row, and names are only decoded when read.
+ * {@link DirectorySnapshot} uses the same layout, so a snapshot is read in place.
+ * <pre>
+ * row: int id, long msb, long lsb, long lastSeen, int name start, byte name length
+ * </pre>
+ */
+public class DirectoryData {
+    static final int ROW = 33;
+    private static final int ID = 0;
+    private static final int MSB = 4;
+    private static final int LSB = 12;
+    private static final int SEEN = 20;
+    private static final int NAME_START = 28;
+    private static final int NAME_LENGTH = 32;
+
+    private ByteBuffer rows;
+    private ByteBuffer names;
+    private int size = 0;
+    private int namesUsed = 0;
+    private int maxId = 0;
+
+    public DirectoryData() {
+        this(1024);
+    }
+
+    public DirectoryData(int capacity) {
+        capacity = Math.max(16, capacity);
+        this.rows = ByteBuffer.allocate(capacity * ROW);
+        this.names = ByteBuffer.allocate(capacity * 12);
+    }
+
+    /**
+     * Reads rows in place, such as from a mapped file. The buffers are not copied and must not change.
+     * @param rows size rows from index 0
+     * @param names every name the rows point to, from index 0
+     */
+    DirectoryData(ByteBuffer rows, ByteBuffer names, int size) {
+        this.rows = rows;
+        this.names = names;
+        this.size = size;
+        this.namesUsed = names.limit();
+        for (int i = 0; i < size; i++)
+            maxId = Math.max(maxId, getId(i));
+    }
+
+    /**
+     * @param lastSeen epoch milliseconds, or 0 if not known
+     */
+    public void add(int id, long mostSigBits, long leastSigBits, String name, long lastSeen) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Name too long: " + name);
+        if ((size + 1) * ROW > rows.capacity())
+            rows = grow(rows, size * ROW, (size + (size >> 1)) * ROW);
+        if (namesUsed + bytes.length > names.capacity())
+            names = grow(names, namesUsed, Math.max(namesUsed + (namesUsed >> 1), namesUsed + bytes.length));
+
+        int p = size * ROW;
+        rows.putInt(p + ID, id);
+        rows.putLong(p + MSB, mostSigBits);
+        rows.putLong(p + LSB, leastSigBits);
+        rows.putLong(p + SEEN, lastSeen);
+        rows.putInt(p + NAME_START, namesUsed);
+        rows.put(p + NAME_LENGTH, (byte) bytes.length);
+        for (byte b : bytes)
+            names.put(namesUsed++, b);
+        size++;
+        if (id > maxId)
+            maxId = id;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buf, int used, int capacity) {
+        ByteBuffer src = buf.duplicate();
+        src.clear();
+        src.limit(used);
+        ByteBuffer ret = ByteBuffer.allocate(capacity);
+        ret.put(src);
+        ret.clear();
+        return ret;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return highest player id added, or 0 if empty
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    public int getId(int i) {
+        return rows.getInt(i * ROW + ID);
+    }
+
+    public long getMostSignificantBits(int i) {
+        return rows.getLong(i * ROW + MSB);
+    }
+
+    public long getLeastSignificantBits(int i) {
+        return rows.getLong(i * ROW + LSB);
+    }
+
+    public UUID getUUID(int i) {
+        return new UUID(getMostSignificantBits(i), getLeastSignificantBits(i));
+    }
+
+    public String getName(int i) {
+        return new String(getNameBytes(i), StandardCharsets.UTF_8);
+    }
+
+    byte[] getNameBytes(int i) {
+        int start = rows.getInt(i * ROW + NAME_START);
+        byte[] ret = new byte[rows.get(i * ROW + NAME_LENGTH) & 0xFF];
+        for (int j = 0; j < ret.length; j++)
+            ret[j] = names.get(start + j);
+        return ret;
+    }
+
+    /**
+     * @return epoch milliseconds, or 0 if not known
+     */
+    public long getLastSeen(int i) {
+        return rows.getLong(i * ROW + SEEN);
+    }
+
+    /**
+     * @return the rows in use, for writing out as they are
+     */
+    ByteBuffer getRows() {
+        ByteBuffer ret = rows.duplicate();
+        ret.clear();
+        ret.limit(size * ROW);
+        return ret;
+    }
+
+    /**
+     * @return the names in use, for writing out as they are
+     */
+    ByteBuffer getNames() {
+        ByteBuffer ret = names.duplicate();
+        ret.clear();
+        ret.limit(namesUsed);
+        return ret;
+    }
+}
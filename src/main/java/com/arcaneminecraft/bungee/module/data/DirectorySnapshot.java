@@ -0,0 +1,107 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary player directory snapshot: a {@link DirectoryData} written out as it is in memory.
+ * <pre>
+ * int magic "ABPD", int version, long created (epoch ms), int lastId, int count, int namesLength
+ * count * row as in DirectoryData
+ * byte[namesLength] UTF-8 names the rows point to
+ * </pre>
+ * Reading maps the file and uses the rows in place, so nothing is decoded until it is read.
+ * Discord links are not kept here; they are few enough to always load from storage.
+ */
+public final class DirectorySnapshot {
+    private static final int MAGIC = 0x41425044;
+    private static final int VERSION = 4;
+    private static final int HEADER = 28;
+
+    private final long created;
+    private final int lastId;
+    private final DirectoryData data;
+
+    private DirectorySnapshot(long created, int lastId, DirectoryData data) {
+        this.created = created;
+        this.lastId = lastId;
+        this.data = data;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return highest player id covered by this snapshot
+     */
+    public int getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return rows backed by the mapped file
+     */
+    public DirectoryData getData() {
+        return data;
+    }
+
+    /**
+     * Memory-maps a snapshot. The mapping stays valid after the file is replaced.
+     * @return the snapshot, or null if the file is missing or from another version
+     */
+    public static DirectorySnapshot read(File file) throws IOException {
+        if (!file.isFile())
+            return null;
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+                return null;
+
+            long created = buf.getLong(8);
+            int lastId = buf.getInt(16);
+            int count = buf.getInt(20);
+            int namesLength = buf.getInt(24);
+            long rowsEnd = HEADER + (long) count * DirectoryData.ROW;
+            if (count < 0 || namesLength < 0 || rowsEnd + namesLength != buf.capacity())
+                throw new IOException("Truncated player directory snapshot: " + file);
+
+            return new DirectorySnapshot(created, lastId, new DirectoryData(
+                    slice(buf, HEADER, (int) rowsEnd), slice(buf, (int) rowsEnd, (int) rowsEnd + namesLength), count));
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, int from, int to) {
+        ByteBuffer b = buf.duplicate();
+        b.limit(to);
+        b.position(from);
+        return b.slice();
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, forces it to disk and moves it into place,
+     * so a crash leaves either the old snapshot or the new one. Callers must not write the same file at once.
+     */
+    public static void write(File file, long created, int lastId, DirectoryData data) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer rows = data.getRows();
+        ByteBuffer names = data.getNames();
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(created).putInt(lastId).putInt(data.size()).putInt(names.remaining()).flip();
+            for (ByteBuffer b : new ByteBuffer[]{header, rows, names}) {
+                while (b.hasRemaining())
+                    ch.write(b);
+            }
+            ch.force(false);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
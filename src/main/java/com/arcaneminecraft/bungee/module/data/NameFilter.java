@@ -0,0 +1,126 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over player names, ignoring case, and UUIDs.
+ * "No" is always right, so a name it has not seen can be turned away without a lookup;
+ * "maybe" is wrong at about the rate it was sized for, see {@link #getFalsePositiveRate()}.
+ * Entries can be added from any thread but never removed; the filter is rebuilt on load instead.
+ */
+public class NameFilter {
+    private static final long NAME_SEED = 0x9E3779B97F4A7C15L;
+    private static final long UUID_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int hashes;
+    private final AtomicLong added = new AtomicLong();
+
+    /**
+     * @param expected entries the filter should hold at the given rate
+     * @param rate wanted false positive rate, between 0 and 1
+     */
+    public NameFilter(int expected, double rate) {
+        expected = Math.max(expected, 64);
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-expected * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.size = (long) words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+    }
+
+    public void add(String name) {
+        set(hash(name));
+    }
+
+    public void add(UUID uuid) {
+        set(hash(uuid));
+    }
+
+    /**
+     * @return false if the name, ignoring case, was never added
+     */
+    public boolean mightContain(String name) {
+        return test(hash(name));
+    }
+
+    /**
+     * @return false if the UUID was never added
+     */
+    public boolean mightContain(UUID uuid) {
+        return test(hash(uuid));
+    }
+
+    private void set(long h) {
+        long h2 = (h >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h + i * h2) & Long.MAX_VALUE) % size;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            long old;
+            while (((old = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+        }
+        added.incrementAndGet();
+    }
+
+    private boolean test(long h) {
+        long h2 = (h >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = ((h + i * h2) & Long.MAX_VALUE) % size;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Lowercases ASCII only, the same way the directory compares names
+    private static long hash(String name) {
+        long h = NAME_SEED;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+            h = (h ^ c) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long hash(UUID uuid) {
+        return mix(mix(uuid.getMostSignificantBits() ^ UUID_SEED) ^ uuid.getLeastSignificantBits());
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Estimates the chance that an entry never added is reported as maybe present,
+     * from how many bits are set now. This grows as entries are added past the expected count.
+     */
+    public double getFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < bits.length(); i++)
+            set += Long.bitCount(bits.get(i));
+        return Math.pow((double) set / size, hashes);
+    }
+
+    /**
+     * @return number of adds, counting repeats
+     */
+    public long getAdded() {
+        return added.get();
+    }
+
+    /**
+     * @return approximate heap used by the bit array, in bytes
+     */
+    public long getFootprint() {
+        return size / 8;
+    }
+}
@@ -0,0 +1,117 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Names players used before their current one, looked up both ways.
+ * Renames are rare next to players, so this is kept in plain maps.
+ */
+public class NameHistory {
+    // Lowercase name to everyone who used it, most recent first
+    private final Map<String, List<Entry>> byName = new HashMap<>();
+    // Player to their past names, most recent first
+    private final Map<UUID, List<Entry>> byUuid = new HashMap<>();
+    private int size = 0;
+
+    /**
+     * Records that the player stopped using the name at the given time.
+     * If they had used it before too, only the later time is kept.
+     */
+    public synchronized void add(UUID uuid, String name, long changed) {
+        List<Entry> names = byUuid.computeIfAbsent(uuid, k -> new ArrayList<>(2));
+        for (Entry e : names) {
+            if (e.name.equalsIgnoreCase(name)) {
+                if (e.changed >= changed)
+                    return;
+                names.remove(e);
+                byName.get(e.name.toLowerCase()).remove(e);
+                size--;
+                break;
+            }
+        }
+
+        Entry e = new Entry(uuid, name, changed);
+        insert(names, e);
+        insert(byName.computeIfAbsent(name.toLowerCase(), k -> new ArrayList<>(1)), e);
+        size++;
+    }
+
+    private static void insert(List<Entry> list, Entry e) {
+        int i = 0;
+        while (i < list.size() && list.get(i).changed > e.changed)
+            i++;
+        list.add(i, e);
+    }
+
+    /**
+     * @return the player who most recently used the name, ignoring case, or null if nobody did
+     */
+    public synchronized UUID getUUID(String name) {
+        List<Entry> l = byName.get(name.toLowerCase());
+        return l == null || l.isEmpty() ? null : l.get(0).uuid;
+    }
+
+    /**
+     * @return the player's past names, most recent first
+     */
+    public synchronized List<Entry> getPastNames(UUID uuid) {
+        List<Entry> l = byUuid.get(uuid);
+        return l == null ? Collections.emptyList() : new ArrayList<>(l);
+    }
+
+    /**
+     * @return past names containing the query, ignoring case, most recent first
+     */
+    public synchronized List<Entry> search(String query, int limit) {
+        String q = query.toLowerCase();
+        List<Entry> ret = new ArrayList<>();
+        for (Map.Entry<String, List<Entry>> e : byName.entrySet()) {
+            if (e.getKey().contains(q))
+                ret.addAll(e.getValue());
+        }
+        ret.sort((a, b) -> Long.compare(b.changed, a.changed));
+        return ret.size() > limit ? new ArrayList<>(ret.subList(0, limit)) : ret;
+    }
+
+    /**
+     * Runs the action on every past name, once per player who used it.
+     */
+    public synchronized void forEachName(Consumer<String> action) {
+        for (List<Entry> l : byName.values()) {
+            for (Entry e : l)
+                action.accept(e.name);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public static final class Entry {
+        private final UUID uuid;
+        private final String name;
+        private final long changed;
+
+        private Entry(UUID uuid, String name, long changed) {
+            this.uuid = uuid;
+            this.name = name;
+            this.changed = changed;
+        }
+
+        public UUID getUUID() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return when the player stopped using this name, in milliseconds
+         */
+        public long getChanged() {
+            return changed;
+        }
+    }
+}
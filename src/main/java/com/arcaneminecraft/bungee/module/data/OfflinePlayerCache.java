@@ -0,0 +1,175 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of offline players' rows.
+ * Entries are evicted least recently used once the cache is full, and expire after a fixed time.
+ * Loads in progress are shared, so concurrent lookups of the same player issue one query.
+ * Rows loaded elsewhere are only cached if nothing was invalidated since the load started,
+ * tracked by a generation per stripe of UUIDs.
+ */
+public class OfflinePlayerCache {
+    private static final int STRIPES = 64;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<UUID, Cached> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Bumped on invalidation; guarded by entries
+    private final long[] generations = new long[STRIPES];
+
+    public OfflinePlayerCache(int maxSize, long ttl, TimeUnit unit) {
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<UUID, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Cached> eldest) {
+                if (size() <= OfflinePlayerCache.this.maxSize)
+                    return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached row, or starts loading it.
+     * Players that do not exist, or failed to load, are not cached.
+     */
+    public CompletableFuture<ArcanePlayer> get(UUID uuid, Function<UUID, CompletableFuture<ArcanePlayer>> loader) {
+        Cached e;
+        synchronized (entries) {
+            e = entries.get(uuid);
+            if (e != null && System.nanoTime() - e.loaded < ttlNanos) {
+                hits.incrementAndGet();
+                return e.future;
+            }
+            if (e != null) {
+                entries.remove(uuid);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            if (maxSize != 0) {
+                e = new Cached(new CompletableFuture<>());
+                entries.put(uuid, e);
+            }
+        }
+        if (e == null)
+            return loader.apply(uuid);
+
+        final Cached entry = e;
+        loader.apply(uuid).whenComplete((p, ex) -> {
+            if (p == null) {
+                synchronized (entries) {
+                    entries.remove(uuid, entry);
+                }
+            }
+            if (ex != null)
+                entry.future.completeExceptionally(ex);
+            else
+                entry.future.complete(p);
+        });
+        return entry.future;
+    }
+
+    /**
+     * @return the cached row, or null if it is missing or expired
+     */
+    public CompletableFuture<ArcanePlayer> getIfPresent(UUID uuid) {
+        synchronized (entries) {
+            Cached e = entries.get(uuid);
+            if (e != null && System.nanoTime() - e.loaded < ttlNanos) {
+                hits.incrementAndGet();
+                return e.future;
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Call before loading players elsewhere, and pass the result to {@link #put}.
+     */
+    public long[] getGenerations() {
+        synchronized (entries) {
+            return generations.clone();
+        }
+    }
+
+    /**
+     * Caches a player loaded elsewhere, such as by a bulk query,
+     * unless a player near them was invalidated since the load started.
+     * @param generations from {@link #getGenerations()} taken before the load
+     */
+    public void put(ArcanePlayer player, long[] generations) {
+        if (maxSize == 0)
+            return;
+        UUID uuid = player.getUniqueID();
+        synchronized (entries) {
+            int i = stripe(uuid);
+            if (this.generations[i] != generations[i])
+                return;
+            entries.put(uuid, new Cached(CompletableFuture.completedFuture(player)));
+        }
+    }
+
+    public void invalidate(UUID uuid) {
+        synchronized (entries) {
+            entries.remove(uuid);
+            generations[stripe(uuid)]++;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            for (int i = 0; i < STRIPES; i++)
+                generations[i]++;
+        }
+    }
+
+    private static int stripe(UUID uuid) {
+        long h = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        return (int) (h ^ (h >>> 32)) & (STRIPES - 1);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Cached {
+        private final CompletableFuture<ArcanePlayer> future;
+        private final long loaded = System.nanoTime();
+
+        private Cached(CompletableFuture<ArcanePlayer> future) {
+            this.future = future;
+        }
+    }
+}
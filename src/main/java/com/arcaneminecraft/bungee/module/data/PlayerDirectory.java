@@ -0,0 +1,841 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every known player's UUID and name, both ways.
+ * Players are rows in parallel arrays: UUIDs as two longs, names as UTF-8 bytes in one shared arena.
+ * Two open addressing tables (linear probing, at most half full) point from UUID and from
+ * lowercase name to the row, so an entry costs no objects at all.
+ * Each row also keeps when the player was last seen, to the minute.
+ * Names are matched ignoring ASCII case, which is all Minecraft names use.
+ * For searches, rows holding a name are also kept sorted by lowercase name, and listed by each
+ * trigram (three letters in a row) of their name. Walking the sorted names like a trie gives
+ * "did you mean" matches by edit distance. These are built on the first search and kept
+ * up to date by each put after that, so bulk loads do not pay for them.
+ * Reads share a lock and writes take it exclusively, so it is safe to use from any thread.
+ */
+public class PlayerDirectory {
+    private static final int NONE = 0;
+    // a-z, 0-9, _ and anything else
+    private static final int GRAM_ALPHABET = 38;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size = 0;
+    private long[] msb;
+    private long[] lsb;
+    private int[] nameStart;
+    private byte[] nameLength;
+    // Minutes since the epoch, or 0 if not known
+    private int[] seen;
+    private byte[] arena;
+    private int arenaUsed = 0;
+    // Bytes in the arena left behind by renames; dropped when the arena grows
+    private int arenaGarbage = 0;
+    // Row + 1, or NONE for an empty slot
+    private int[] byUuid;
+    private int[] byName;
+    // Search indexes below are only kept while indexed
+    private boolean indexed = false;
+    // Rows holding their name, by lowercase name
+    private int[] sorted = new int[0];
+    private int sortedSize = 0;
+    // Rows holding their name, by trigram
+    private int[][] grams;
+    private int[] gramSizes;
+
+    public PlayerDirectory() {
+        this(1024);
+    }
+
+    public PlayerDirectory(int capacity) {
+        capacity = Math.max(16, capacity);
+        this.msb = new long[capacity];
+        this.lsb = new long[capacity];
+        this.nameStart = new int[capacity];
+        this.nameLength = new byte[capacity];
+        this.seen = new int[capacity];
+        this.arena = new byte[capacity * 12];
+        this.byUuid = new int[tableSize(capacity)];
+        this.byName = new int[byUuid.length];
+    }
+
+    /**
+     * Adds the player, or renames them if they are already here.
+     * A name held by someone else is taken over by this player.
+     * @return the player's previous name, or null if they are new
+     */
+    public String put(UUID uuid, String name) {
+        return put(uuid, name, 0);
+    }
+
+    /**
+     * Like {@link #put(UUID, String)}, also moving the player's last seen time forward.
+     * @param lastSeen epoch milliseconds, or 0 if not known
+     */
+    public String put(UUID uuid, String name, long lastSeen) {
+        int minute = (int) (lastSeen / 60000);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Name too long: " + name);
+        long m = uuid.getMostSignificantBits();
+        long l = uuid.getLeastSignificantBits();
+
+        lock.writeLock().lock();
+        try {
+            int row = findUuid(m, l);
+            String old = null;
+            if (row != -1) {
+                if (minute > seen[row])
+                    seen[row] = minute;
+                if (equalsExact(row, bytes))
+                    return name;
+                old = decode(row);
+                unindex(row);
+                removeName(row);
+                arenaGarbage += nameLength[row] & 0xFF;
+                nameLength[row] = 0;
+            } else {
+                if (size == msb.length)
+                    grow();
+                row = size++;
+                msb[row] = m;
+                lsb[row] = l;
+                seen[row] = minute;
+                insert(byUuid, hash(m, l), row);
+            }
+
+            if (arenaUsed + bytes.length > arena.length)
+                growArena(bytes.length);
+            System.arraycopy(bytes, 0, arena, arenaUsed, bytes.length);
+            nameStart[row] = arenaUsed;
+            nameLength[row] = (byte) bytes.length;
+            arenaUsed += bytes.length;
+
+            // Someone else had this name before
+            int other = findName(bytes);
+            if (other != -1) {
+                unindex(other);
+                removeName(other);
+            }
+            insert(byName, hashName(bytes), row);
+            index(row);
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the player's name, or null if they are unknown
+     */
+    public String getName(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            int row = findUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            return row == -1 ? null : decode(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return UUID of the player currently holding the name, ignoring case, or null if none
+     */
+    public UUID getUUID(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int row = findName(bytes);
+            return row == -1 ? null : new UUID(msb[row], lsb[row]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            return findUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) != -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a copy of every player's name
+     */
+    public List<String> getNames() {
+        lock.readLock().lock();
+        try {
+            List<String> ret = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                ret.add(decode(i));
+            return ret;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds names starting with the prefix, ignoring case, in O(log n + limit).
+     * @return up to limit names in case-insensitive order
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        readLockIndexed();
+        try {
+            List<String> ret = new ArrayList<>(Math.min(limit, 16));
+            for (int i = lowerBound(bytes, -1); i < sortedSize && ret.size() < limit; i++) {
+                int row = sorted[i];
+                if (!startsWithIgnoreCase(row, bytes))
+                    break;
+                ret.add(decode(row));
+            }
+            return ret;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds names containing the query, ignoring case.
+     * Queries of three or more letters only look at names sharing its rarest trigram;
+     * shorter ones go through every name.
+     * @param limit most matches to return
+     * @param timeout nanoseconds to search for before returning what was found so far
+     * @return matches in case-insensitive order of name
+     */
+    public SearchResult search(String query, int limit, long timeout) {
+        byte[] q = query.getBytes(StandardCharsets.UTF_8);
+        if (q.length == 0)
+            return new SearchResult(Collections.emptyList(), true);
+        long deadline = System.nanoTime() + timeout;
+
+        readLockIndexed();
+        try {
+            int[] candidates = sorted;
+            int count = sortedSize;
+            for (int i = 0; i + 3 <= q.length; i++) {
+                int g = gram(q[i], q[i + 1], q[i + 2]);
+                if (gramSizes[g] < count) {
+                    candidates = grams[g];
+                    count = gramSizes[g];
+                }
+            }
+
+            List<Match> ret = new ArrayList<>();
+            boolean complete = true;
+            for (int i = 0; i < count; i++) {
+                if (ret.size() == limit || ((i & 0xFF) == 0xFF && System.nanoTime() > deadline)) {
+                    complete = false;
+                    break;
+                }
+                int row = candidates[i];
+                int[] offsets = find(row, q);
+                if (offsets == null)
+                    continue;
+                String name = decode(row);
+                if (name.length() != (nameLength[row] & 0xFF)) {
+                    // Not all ASCII; offsets are in bytes
+                    for (int j = 0; j < offsets.length; j++)
+                        offsets[j] = new String(arena, nameStart[row], offsets[j], StandardCharsets.UTF_8).length();
+                }
+                ret.add(new Match(new UUID(msb[row], lsb[row]), name, offsets, query.length()));
+            }
+            if (candidates != sorted)
+                ret.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name));
+            return new SearchResult(ret, complete);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds names within an edit distance of the given one, ignoring case.
+     * The sorted names are walked as if they were a trie: edit distance rows are shared
+     * between names with a common prefix, only the band of each row within the distance is
+     * worked out, and every name under a prefix that is already too far off is skipped.
+     * @return up to limit names, closest first, then in case-insensitive order
+     */
+    public List<String> getSimilarNames(String name, int maxDistance, int limit) {
+        byte[] q = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < q.length; i++)
+            q[i] = lower(q[i]);
+
+        int m = q.length;
+        int far = maxDistance + 1;
+        // rows[k][j]: edit distance between the first k letters of the current name and the first j of q,
+        // or far if more than maxDistance
+        int[][] rows = new int[256][m + 2];
+        for (int j = 0; j <= m + 1; j++)
+            rows[0][j] = Math.min(j, far);
+
+        List<int[]> found = new ArrayList<>();
+        readLockIndexed();
+        try {
+            // Rows are valid up to this depth for the previous name
+            int valid = 0;
+            int prev = -1;
+            for (int i = 0; i < sortedSize; ) {
+                int row = sorted[i];
+                int start = nameStart[row];
+                int len = nameLength[row] & 0xFF;
+
+                int depth = prev == -1 ? 0 : Math.min(valid, commonPrefix(prev, row));
+                boolean pruned = false;
+                while (depth < len) {
+                    byte c = lower(arena[start + depth]);
+                    int[] above = rows[depth];
+                    int[] cur = rows[++depth];
+                    // Cells outside [lo, hi] are more than maxDistance
+                    int lo = Math.max(1, depth - maxDistance);
+                    int hi = Math.min(m, depth + maxDistance);
+                    cur[0] = Math.min(depth, far);
+                    cur[lo - 1] = lo == 1 ? cur[0] : far;
+                    int min = cur[0];
+                    for (int j = lo; j <= hi; j++) {
+                        int d = Math.min(above[j] + 1, cur[j - 1] + 1);
+                        d = Math.min(d, above[j - 1] + (q[j - 1] == c ? 0 : 1));
+                        cur[j] = Math.min(d, far);
+                        if (d < min)
+                            min = d;
+                    }
+                    cur[hi + 1] = far;
+                    if (min > maxDistance) {
+                        pruned = true;
+                        break;
+                    }
+                }
+
+                prev = row;
+                if (pruned) {
+                    // Nothing starting with these letters can be close enough
+                    valid = depth - 1;
+                    i = prefixEnd(row, depth, i + 1);
+                    continue;
+                }
+                valid = len;
+                if (Math.abs(len - m) <= maxDistance && rows[len][m] <= maxDistance)
+                    found.add(new int[]{rows[len][m], row});
+                i++;
+            }
+
+            found.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : compareRows(a[1], b[1]));
+            List<String> ret = new ArrayList<>(Math.min(limit, found.size()));
+            for (int i = 0; i < found.size() && i < limit; i++)
+                ret.add(decode(found.get(i)[1]));
+            return ret;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls the action with every player. The directory must not be changed from the action.
+     */
+    public void forEach(Visitor action) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++)
+                action.accept(new UUID(msb[i], lsb[i]), decode(i), seen[i] * 60000L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of players last seen before the given time; players not known to be seen are not counted
+     */
+    public int countSeenBefore(long time) {
+        int minute = (int) (time / 60000);
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (seen[i] != 0 && seen[i] < minute)
+                    n++;
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return approximate bytes held by the arrays, including the search indexes once built
+     */
+    public long getFootprint() {
+        lock.readLock().lock();
+        try {
+            long ret = msb.length * 25L + arena.length + byUuid.length * 8L;
+            if (indexed) {
+                // Array headers as 16 bytes and references as 4, since the trigram lists are many and mostly short
+                ret += 16 + sorted.length * 4L;
+                ret += 32 + grams.length * 8L;
+                for (int[] list : grams) {
+                    if (list != null)
+                        ret += 16 + list.length * 4L;
+                }
+            }
+            return ret;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock, building the search indexes first if they are not there.
+     */
+    private void readLockIndexed() {
+        lock.readLock().lock();
+        if (indexed)
+            return;
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (!indexed)
+                buildIndexes();
+            // Downgrade
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void buildIndexes() {
+        int[] rows = new int[Math.max(16, size)];
+        int n = 0;
+        for (int slot : byName) {
+            if (slot != NONE)
+                rows[n++] = slot - 1;
+        }
+        mergeSort(rows, new int[n], 0, n);
+        sorted = rows;
+        sortedSize = n;
+
+        grams = new int[GRAM_ALPHABET * GRAM_ALPHABET * GRAM_ALPHABET][];
+        gramSizes = new int[grams.length];
+        for (int i = 0; i < n; i++)
+            addGrams(rows[i]);
+        indexed = true;
+    }
+
+    private void index(int row) {
+        if (!indexed)
+            return;
+        int i = lowerBound(arena, nameStart[row], nameLength[row] & 0xFF, row);
+        if (sortedSize == sorted.length)
+            sorted = Arrays.copyOf(sorted, sortedSize + (sortedSize >> 1));
+        System.arraycopy(sorted, i, sorted, i + 1, sortedSize - i);
+        sorted[i] = row;
+        sortedSize++;
+        addGrams(row);
+    }
+
+    private void unindex(int row) {
+        if (!indexed)
+            return;
+        int i = lowerBound(arena, nameStart[row], nameLength[row] & 0xFF, row);
+        // Not there if the row had lost its name to someone else
+        if (i == sortedSize || sorted[i] != row)
+            return;
+        System.arraycopy(sorted, i + 1, sorted, i, sortedSize - i - 1);
+        sortedSize--;
+
+        int start = nameStart[row];
+        for (int j = start; j + 3 <= start + (nameLength[row] & 0xFF); j++) {
+            int g = gram(arena[j], arena[j + 1], arena[j + 2]);
+            int[] list = grams[g];
+            for (int k = 0; k < gramSizes[g]; k++) {
+                if (list[k] == row) {
+                    // Order does not matter; move the last one here
+                    list[k] = list[--gramSizes[g]];
+                    break;
+                }
+            }
+        }
+    }
+
+    private void addGrams(int row) {
+        int start = nameStart[row];
+        for (int j = start; j + 3 <= start + (nameLength[row] & 0xFF); j++) {
+            int g = gram(arena[j], arena[j + 1], arena[j + 2]);
+            int[] list = grams[g];
+            int n = gramSizes[g];
+            // A trigram seen twice in one name is listed once
+            if (n > 0 && list[n - 1] == row)
+                continue;
+            if (list == null)
+                list = grams[g] = new int[4];
+            else if (n == list.length)
+                list = grams[g] = Arrays.copyOf(list, n * 2);
+            list[n] = row;
+            gramSizes[g] = n + 1;
+        }
+    }
+
+    private static int gram(byte a, byte b, byte c) {
+        return (gramLetter(a) * GRAM_ALPHABET + gramLetter(b)) * GRAM_ALPHABET + gramLetter(c);
+    }
+
+    private static int gramLetter(byte b) {
+        b = lower(b);
+        if (b >= 'a' && b <= 'z')
+            return b - 'a';
+        if (b >= '0' && b <= '9')
+            return 26 + b - '0';
+        return b == '_' ? 36 : 37;
+    }
+
+    /**
+     * @return where the query appears in the row's name without overlapping, or null if it does not
+     */
+    private int[] find(int row, byte[] q) {
+        int start = nameStart[row];
+        int len = nameLength[row] & 0xFF;
+        int[] ret = null;
+        int n = 0;
+        for (int i = 0; i + q.length <= len; ) {
+            int j = 0;
+            while (j < q.length && lower(arena[start + i + j]) == lower(q[j]))
+                j++;
+            if (j < q.length) {
+                i++;
+                continue;
+            }
+            if (ret == null)
+                ret = new int[Math.max(1, len / q.length)];
+            ret[n++] = i;
+            i += q.length;
+        }
+        return ret == null ? null : Arrays.copyOf(ret, n);
+    }
+
+    private int lowerBound(byte[] key, int row) {
+        return lowerBound(key, 0, key.length, row);
+    }
+
+    /**
+     * @return first index in sorted not before the key; rows with equal names are ordered by row,
+     * and row -1 comes before all of them
+     */
+    private int lowerBound(byte[] key, int start, int len, int row) {
+        int lo = 0, hi = sortedSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int r = sorted[mid];
+            int c = compare(arena, nameStart[r], nameLength[r] & 0xFF, key, start, len);
+            if (c == 0)
+                c = Integer.compare(r, row);
+            if (c < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private void mergeSort(int[] rows, int[] tmp, int from, int to) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, tmp, from, mid);
+        mergeSort(rows, tmp, mid, to);
+        System.arraycopy(rows, from, tmp, from, to - from);
+        for (int i = from, a = from, b = mid; i < to; i++) {
+            if (b == to || (a < mid && compareRows(tmp[a], tmp[b]) <= 0))
+                rows[i] = tmp[a++];
+            else
+                rows[i] = tmp[b++];
+        }
+    }
+
+    private int compareRows(int a, int b) {
+        int c = compare(arena, nameStart[a], nameLength[a] & 0xFF, arena, nameStart[b], nameLength[b] & 0xFF);
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    private static int compare(byte[] a, int aStart, int aLen, byte[] b, int bStart, int bLen) {
+        for (int i = 0; i < aLen && i < bLen; i++) {
+            int c = (lower(a[aStart + i]) & 0xFF) - (lower(b[bStart + i]) & 0xFF);
+            if (c != 0)
+                return c;
+        }
+        return aLen - bLen;
+    }
+
+    private int commonPrefix(int a, int b) {
+        int aStart = nameStart[a], bStart = nameStart[b];
+        int len = Math.min(nameLength[a] & 0xFF, nameLength[b] & 0xFF);
+        int i = 0;
+        while (i < len && lower(arena[aStart + i]) == lower(arena[bStart + i]))
+            i++;
+        return i;
+    }
+
+    /**
+     * @return first index in sorted from {@code from} whose name does not start with the first
+     * {@code length} letters of the row's name
+     */
+    private int prefixEnd(int row, int length, int from) {
+        int start = nameStart[row];
+        // Usually the very next name already differs; otherwise gallop ahead before searching
+        int lo = from, step = 1;
+        while (lo < sortedSize && commonPrefix(row, sorted[lo]) >= length) {
+            lo += step;
+            step <<= 1;
+        }
+        if (lo <= from)
+            return from;
+        int hi = Math.min(lo, sortedSize);
+        lo = from;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int r = sorted[mid];
+            int c = compare(arena, nameStart[r], Math.min(length, nameLength[r] & 0xFF), arena, start, length);
+            if (c <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private boolean startsWithIgnoreCase(int row, byte[] prefix) {
+        if ((nameLength[row] & 0xFF) < prefix.length)
+            return false;
+        int start = nameStart[row];
+        for (int i = 0; i < prefix.length; i++) {
+            if (lower(arena[start + i]) != lower(prefix[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private String decode(int row) {
+        return new String(arena, nameStart[row], nameLength[row] & 0xFF, StandardCharsets.UTF_8);
+    }
+
+    private int findUuid(long m, long l) {
+        int mask = byUuid.length - 1;
+        for (int i = hash(m, l) & mask; ; i = (i + 1) & mask) {
+            int row = byUuid[i] - 1;
+            if (row == -1)
+                return -1;
+            if (msb[row] == m && lsb[row] == l)
+                return row;
+        }
+    }
+
+    private int findName(byte[] bytes) {
+        int mask = byName.length - 1;
+        for (int i = hashName(bytes) & mask; ; i = (i + 1) & mask) {
+            int row = byName[i] - 1;
+            if (row == -1)
+                return -1;
+            if (equalsIgnoreCase(row, bytes))
+                return row;
+        }
+    }
+
+    private static void insert(int[] table, int hash, int row) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != NONE)
+            i = (i + 1) & mask;
+        table[i] = row + 1;
+    }
+
+    /**
+     * Removes the row's name slot, moving later slots of the probe run back so lookups still find them.
+     */
+    private void removeName(int row) {
+        int mask = byName.length - 1;
+        int i = hashName(arena, nameStart[row], nameLength[row] & 0xFF) & mask;
+        while (byName[i] != row + 1) {
+            if (byName[i] == NONE)
+                return;
+            i = (i + 1) & mask;
+        }
+
+        int gap = i;
+        for (int j = (gap + 1) & mask; byName[j] != NONE; j = (j + 1) & mask) {
+            int r = byName[j] - 1;
+            int home = hashName(arena, nameStart[r], nameLength[r] & 0xFF) & mask;
+            // Move it if its home is not in (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                byName[gap] = byName[j];
+                gap = j;
+            }
+        }
+        byName[gap] = NONE;
+    }
+
+    private void grow() {
+        int n = msb.length + (msb.length >> 1);
+        msb = Arrays.copyOf(msb, n);
+        lsb = Arrays.copyOf(lsb, n);
+        nameStart = Arrays.copyOf(nameStart, n);
+        nameLength = Arrays.copyOf(nameLength, n);
+        seen = Arrays.copyOf(seen, n);
+
+        int tableSize = tableSize(n);
+        if (tableSize > byUuid.length) {
+            byUuid = new int[tableSize];
+            for (int row = 0; row < size; row++)
+                insert(byUuid, hash(msb[row], lsb[row]), row);
+
+            // Only names that hold their slot; names taken over by someone else stay out
+            int[] oldByName = byName;
+            byName = new int[tableSize];
+            for (int slot : oldByName) {
+                if (slot != NONE)
+                    insert(byName, hashName(arena, nameStart[slot - 1], nameLength[slot - 1] & 0xFF), slot - 1);
+            }
+        }
+    }
+
+    /**
+     * Copies live names into a new arena with room for at least {@code needed} more bytes.
+     */
+    private void growArena(int needed) {
+        int live = arenaUsed - arenaGarbage;
+        byte[] next = new byte[Math.max(arena.length, (live + needed) * 3 / 2)];
+        int used = 0;
+        for (int row = 0; row < size; row++) {
+            int len = nameLength[row] & 0xFF;
+            System.arraycopy(arena, nameStart[row], next, used, len);
+            nameStart[row] = used;
+            used += len;
+        }
+        arena = next;
+        arenaUsed = used;
+        arenaGarbage = 0;
+    }
+
+    private boolean equalsExact(int row, byte[] bytes) {
+        int len = nameLength[row] & 0xFF;
+        if (len != bytes.length)
+            return false;
+        int start = nameStart[row];
+        for (int i = 0; i < len; i++) {
+            if (arena[start + i] != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int row, byte[] bytes) {
+        int len = nameLength[row] & 0xFF;
+        if (len != bytes.length)
+            return false;
+        int start = nameStart[row];
+        for (int i = 0; i < len; i++) {
+            if (lower(arena[start + i]) != lower(bytes[i]))
+                return false;
+        }
+        return true;
+    }
+
+    static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static int hash(long m, long l) {
+        long h = (m ^ l) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hashName(byte[] bytes) {
+        return hashName(bytes, 0, bytes.length);
+    }
+
+    private static int hashName(byte[] bytes, int start, int len) {
+        int h = 0;
+        for (int i = start; i < start + len; i++)
+            h = 31 * h + lower(bytes[i]);
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    public interface Visitor {
+        /**
+         * @param lastSeen epoch milliseconds, or 0 if not known
+         */
+        void accept(UUID uuid, String name, long lastSeen);
+    }
+
+    public static final class SearchResult {
+        private final List<Match> matches;
+        private final boolean complete;
+
+        SearchResult(List<Match> matches, boolean complete) {
+            this.matches = matches;
+            this.complete = complete;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        /**
+         * @return false if the search stopped at the limit or ran out of time
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    public static final class Match {
+        private final UUID uuid;
+        private final String name;
+        private final int[] offsets;
+        private final int length;
+
+        Match(UUID uuid, String name, int[] offsets, int length) {
+            this.uuid = uuid;
+            this.name = name;
+            this.offsets = offsets;
+            this.length = length;
+        }
+
+        public UUID getUUID() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return where each match starts in the name, in order and not overlapping
+         */
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The player directory split by when players were last seen.
+ * Players seen since the cutoff, or not known to have left yet, are kept in memory in a
+ * {@link PlayerDirectory}; the rest are in a {@link ColdDirectory} on disk, read only when
+ * the memory tier does not have what was asked for.
+ * Putting a player, as on join, brings them into memory, and their entry on disk is ignored
+ * from then on. Players go back out when the directory is rebuilt with a later cutoff.
+ * "Did you mean" only looks at players in memory.
+ */
+public class TieredDirectory {
+    private final PlayerDirectory hot;
+    private final ColdDirectory cold;
+    // Players on disk that have been put into memory since
+    private final AtomicInteger promoted = new AtomicInteger();
+
+    public TieredDirectory() {
+        this(new PlayerDirectory(), ColdDirectory.empty());
+    }
+
+    private TieredDirectory(PlayerDirectory hot, ColdDirectory cold) {
+        this.hot = hot;
+        this.cold = cold;
+    }
+
+    /**
+     * Builds a directory from loaded rows, writing players last seen before the cutoff to the file.
+     * @param cutoff epoch milliseconds; 0 keeps everyone in memory and leaves the file alone
+     */
+    public static TieredDirectory build(DirectoryData data, long cutoff, File coldFile) throws IOException {
+        int[] coldRows = new int[data.size()];
+        int coldCount = 0;
+        for (int i = 0; i < data.size(); i++) {
+            long seen = data.getLastSeen(i);
+            if (seen != 0 && seen < cutoff)
+                coldRows[coldCount++] = i;
+        }
+
+        ColdDirectory cold = coldCount == 0 ? ColdDirectory.empty() : ColdDirectory.write(coldFile, data, coldRows, coldCount);
+        return new TieredDirectory(hotTier(data, coldRows, coldCount), cold);
+    }
+
+    /**
+     * Builds a directory with every row in memory.
+     */
+    public static TieredDirectory inMemory(DirectoryData data) {
+        return new TieredDirectory(hotTier(data, new int[0], 0), ColdDirectory.empty());
+    }
+
+    // Every row but the given ones, which are in order
+    private static PlayerDirectory hotTier(DirectoryData data, int[] coldRows, int coldCount) {
+        PlayerDirectory hot = new PlayerDirectory(data.size() - coldCount);
+        for (int i = 0, c = 0; i < data.size(); i++) {
+            if (c < coldCount && coldRows[c] == i)
+                c++;
+            else
+                hot.put(data.getUUID(i), data.getName(i), data.getLastSeen(i));
+        }
+        return hot;
+    }
+
+    /**
+     * Adds or renames the player in memory, moving their last seen time forward.
+     * @return the player's previous name, from either tier, or null if they are new
+     */
+    public String put(UUID uuid, String name, long lastSeen) {
+        String old = hot.put(uuid, name, lastSeen);
+        if (old == null) {
+            old = cold.getName(uuid);
+            if (old != null)
+                promoted.incrementAndGet();
+        }
+        return old;
+    }
+
+    public String getName(UUID uuid) {
+        String name = hot.getName(uuid);
+        return name != null ? name : cold.getName(uuid);
+    }
+
+    /**
+     * @return UUID of the player in memory holding the name, ignoring case, or null if none
+     */
+    public UUID getHotUUID(String name) {
+        return hot.getUUID(name);
+    }
+
+    /**
+     * Reads the disk tier; only worth doing once {@link #getHotUUID} found nobody.
+     * @return UUID of the player on disk with the name, ignoring case, or null if none
+     */
+    public UUID getColdUUID(String name) {
+        return cold.getUUID(name, (uuid, n) -> hot.contains(uuid));
+    }
+
+    public boolean contains(UUID uuid) {
+        return hot.contains(uuid) || cold.contains(uuid);
+    }
+
+    /**
+     * @return number of players in either tier
+     */
+    public int size() {
+        return hot.size() + cold.size() - promoted.get();
+    }
+
+    public int getHotSize() {
+        return hot.size();
+    }
+
+    /**
+     * @return players on disk that have not been put into memory since
+     */
+    public int getColdSize() {
+        return cold.size() - promoted.get();
+    }
+
+    /**
+     * @return approximate bytes of heap held by the memory tier
+     */
+    public long getFootprint() {
+        return hot.getFootprint();
+    }
+
+    /**
+     * @return bytes of the disk tier's file
+     */
+    public long getColdFileSize() {
+        return cold.getFileSize();
+    }
+
+    /**
+     * @return number of players in memory last seen before the given time
+     */
+    public int countHotSeenBefore(long time) {
+        return hot.countSeenBefore(time);
+    }
+
+    /**
+     * @return a copy of every player's name
+     */
+    public List<String> getNames() {
+        List<String> ret = new ArrayList<>(size());
+        forEach((uuid, name, seen) -> ret.add(name));
+        return ret;
+    }
+
+    /**
+     * @return up to limit names starting with the prefix, ignoring case, in order
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit) {
+        List<String> a = hot.getNamesStartingWith(prefix, limit);
+        List<String> b = cold.getNamesStartingWith(prefix, limit, this::shadowed);
+        if (b.isEmpty())
+            return a;
+
+        List<String> ret = new ArrayList<>(Math.min(limit, a.size() + b.size()));
+        int i = 0, j = 0;
+        while (ret.size() < limit && (i < a.size() || j < b.size())) {
+            if (j == b.size() || (i < a.size() && String.CASE_INSENSITIVE_ORDER.compare(a.get(i), b.get(j)) <= 0))
+                ret.add(a.get(i++));
+            else
+                ret.add(b.get(j++));
+        }
+        return ret;
+    }
+
+    /**
+     * Finds names containing the query, ignoring case, in memory and then on disk with whatever time is left.
+     * See {@link PlayerDirectory#search}.
+     */
+    public PlayerDirectory.SearchResult search(String query, int limit, long timeout) {
+        long deadline = System.nanoTime() + timeout;
+        PlayerDirectory.SearchResult a = hot.search(query, limit, timeout);
+        if (cold.size() == 0)
+            return a;
+        PlayerDirectory.SearchResult b = cold.search(query, limit, deadline, this::shadowed);
+
+        List<PlayerDirectory.Match> ret = new ArrayList<>(a.getMatches());
+        ret.addAll(b.getMatches());
+        ret.sort((x, y) -> String.CASE_INSENSITIVE_ORDER.compare(x.getName(), y.getName()));
+        boolean complete = a.isComplete() && b.isComplete() && ret.size() <= limit;
+        return new PlayerDirectory.SearchResult(ret.size() > limit ? new ArrayList<>(ret.subList(0, limit)) : ret, complete);
+    }
+
+    /**
+     * See {@link PlayerDirectory#getSimilarNames}; only players in memory are looked at.
+     */
+    public List<String> getSimilarNames(String name, int maxDistance, int limit) {
+        return hot.getSimilarNames(name, maxDistance, limit);
+    }
+
+    /**
+     * Calls the action with every player in memory. The directory must not be changed from the action.
+     */
+    public void forEachHot(PlayerDirectory.Visitor action) {
+        hot.forEach(action);
+    }
+
+    /**
+     * Calls the action with every player in either tier. The directory must not be changed from the action.
+     */
+    public void forEach(PlayerDirectory.Visitor action) {
+        hot.forEach(action);
+        cold.forEach((uuid, name, seen) -> {
+            if (!hot.contains(uuid))
+                action.accept(uuid, name, seen);
+        });
+    }
+
+    /**
+     * @return a copy of every player's row, with no id
+     */
+    public DirectoryData toData() {
+        DirectoryData data = new DirectoryData(size());
+        forEach((uuid, name, seen) ->
+                data.add(0, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), name, seen));
+        return data;
+    }
+
+    // A player on disk whose entry is out of date: they are in memory now, or someone there has taken the name
+    private boolean shadowed(UUID uuid, String name) {
+        return hot.contains(uuid) || hot.getUUID(name) != null;
+    }
+}
@@ -0,0 +1,118 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Stops database work from waiting on a connection that is known to be down.
+ * Opens after failure-threshold connection failures in a row; after retry-after
+ * one request is let through, and its outcome closes or re-opens the breaker.
+ * Callers must record an outcome however the request ends, or the next probe waits another retry-after.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown instead of connecting while the breaker is open.
+     */
+    public static class OpenException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        OpenException() {
+            super("Database is unavailable; circuit breaker is open");
+        }
+    }
+
+    private final Logger logger;
+    private final int threshold;
+    private final long retryNanos;
+    private final AtomicLong rejected = new AtomicLong();
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt;
+    private long probeAt;
+
+    CircuitBreaker(Logger logger, int threshold, long retryAfter, TimeUnit unit) {
+        this.logger = logger;
+        this.threshold = threshold;
+        this.retryNanos = unit.toNanos(retryAfter);
+    }
+
+    /**
+     * @return whether the caller may use the database now
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED)
+            return true;
+        long now = System.nanoTime();
+        if ((state == State.OPEN && now - openedAt >= retryNanos)
+                || (state == State.HALF_OPEN && now - probeAt >= retryNanos)) {
+            // Let one probe through, or another if the last one never reported back
+            state = State.HALF_OPEN;
+            probeAt = now;
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @throws OpenException if the caller may not use the database now
+     */
+    public void check() throws OpenException {
+        if (!allowRequest())
+            throw new OpenException();
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED)
+            logger.info("Database connection restored");
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+            if (state == State.CLOSED)
+                logger.warning("Database unreachable after " + failures + " attempts; pausing database access");
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the outcome of a database call that threw.
+     * Only connection failures count against the database.
+     */
+    public void recordFailure(SQLException ex) {
+        if (isConnectionFailure(ex))
+            recordFailure();
+        else
+            recordSuccess();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return whether the exception means the database could not be reached, as opposed to a bad query
+     */
+    public static boolean isConnectionFailure(SQLException ex) {
+        if (ex instanceof SQLNonTransientConnectionException || ex instanceof SQLTransientConnectionException)
+            return true;
+        String state = ex.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
@@ -0,0 +1,59 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A database write that can be journaled while the database is down and applied later.
+ */
+abstract class JournalRecord {
+    static final byte PLAYER_BATCH = 1;
+    static final byte NEWS = 2;
+    static final byte REPORTS = 3;
+
+    interface Decoder {
+        JournalRecord decode(DataInputStream in) throws IOException;
+    }
+
+    abstract byte getType();
+
+    abstract void encode(DataOutputStream out) throws IOException;
+
+    /**
+     * Makes the write. Called inside a transaction that the caller commits.
+     */
+    abstract void apply(Connection c) throws SQLException;
+
+    /**
+     * Splits the write into one record per row, so rows the database rejects can be set aside
+     * without losing the rest. Rows must be safe to apply again.
+     * @return the rows in the order to apply them, or just this record if it has one row
+     */
+    List<JournalRecord> split() {
+        return Collections.singletonList(this);
+    }
+
+    final byte[] toBytes() throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(b);
+        out.writeByte(getType());
+        encode(out);
+        return b.toByteArray();
+    }
+
+    static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,341 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Makes database writes, or journals them while the database is down.
+ * Once anything is journaled, later writes are journaled too until the journal has been
+ * replayed, so writes always reach the database in the order they were made.
+ * Rows the database rejects for other reasons are set aside in a second journal, the rejected file.
+ */
+class JournaledWriter {
+    interface Listener {
+        /**
+         * Called for each record put in the journal, including those left from the last run.
+         */
+        void journaled(JournalRecord record);
+
+        /**
+         * Called once every journaled record has been written to the database.
+         */
+        void drained();
+    }
+
+    private final ArcaneBungee plugin;
+    private final DataSource ds;
+    private final CircuitBreaker breaker;
+    private final WriteJournal journal;
+    private final WriteJournal rejected;
+    private final Map<Byte, JournalRecord.Decoder> decoders = new HashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    // Guards the journal and the decision to write or journal; not held while writing
+    private final Object lock = new Object();
+    private final ScheduledTask syncTask;
+    private final AtomicLong journaledCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private boolean replaying = false;
+
+    JournaledWriter(ArcaneBungee plugin, DataSource ds, CircuitBreaker breaker, File file, File rejectedFile) throws IOException {
+        this.plugin = plugin;
+        this.ds = ds;
+        this.breaker = breaker;
+        this.journal = new WriteJournal(file, plugin.getLogger());
+        this.rejected = new WriteJournal(rejectedFile, plugin.getLogger());
+
+        if (!journal.isEmpty())
+            plugin.getLogger().warning(journal.size() + " database writes from the last run are waiting in " + file.getName());
+
+        long interval = Math.max(1, plugin.getConfig().getInt("mariadb.journal.fsync-interval", 200));
+        this.syncTask = plugin.getProxy().getScheduler().schedule(plugin, this::sync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void register(byte type, JournalRecord.Decoder decoder) {
+        decoders.put(type, decoder);
+    }
+
+    /**
+     * Adds a listener and passes it the records already in the journal.
+     */
+    void addListener(Listener listener) {
+        synchronized (lock) {
+            listeners.add(listener);
+            try {
+                for (byte[] payload : journal.readAll()) {
+                    JournalRecord r = decode(payload);
+                    if (r != null)
+                        listener.journaled(r);
+                }
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not read write journal", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes the record now if the database is up and nothing is waiting in the journal; journals it otherwise.
+     * If the database rejects it for reasons other than connectivity, see {@link #applyByRow}.
+     * Callers write each kind of record from one thread at a time, so a record that fails is
+     * journaled before the next of its kind is decided on.
+     */
+    void write(JournalRecord record) {
+        synchronized (lock) {
+            if (!journal.isEmpty() || !breaker.allowRequest()) {
+                journal(record);
+                return;
+            }
+        }
+
+        // Not under the lock, so writes from other queues are made alongside this one
+        SQLException failure = null;
+        try (Connection c = ds.getConnection()) {
+            applyByRow(c, record);
+            return;
+        } catch (SQLException ex) {
+            // Connection failure; rows already written are written again on replay
+            failure = ex;
+        } catch (RuntimeException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Database write failed unexpectedly; journaling it", ex);
+        } finally {
+            if (failure == null)
+                breaker.recordSuccess();
+            else
+                breaker.recordFailure(failure);
+        }
+        synchronized (lock) {
+            journal(record);
+        }
+    }
+
+    /**
+     * Applies the record, and if the database rejects it, applies its rows one at a time,
+     * moving the rows it still rejects to the rejected file. A row that throws anything else,
+     * such as a bad value, is rejected the same way.
+     * @throws SQLException only on connection failure
+     */
+    private void applyByRow(Connection c, JournalRecord record) throws SQLException {
+        List<JournalRecord> rows;
+        try {
+            apply(c, record);
+            return;
+        } catch (SQLException | RuntimeException ex) {
+            if (isConnectionFailure(ex))
+                throw ex;
+            rows = record.split();
+            if (rows.size() == 1) {
+                reject(record, ex);
+                return;
+            }
+            plugin.getLogger().log(Level.WARNING, "Database rejected a write of " + rows.size() + " rows; retrying them one at a time", ex);
+        }
+
+        for (JournalRecord row : rows) {
+            try {
+                apply(c, row);
+            } catch (SQLException | RuntimeException ex) {
+                if (isConnectionFailure(ex))
+                    throw ex;
+                reject(row, ex);
+            }
+        }
+    }
+
+    private static boolean isConnectionFailure(Exception ex) {
+        return ex instanceof SQLException && CircuitBreaker.isConnectionFailure((SQLException) ex);
+    }
+
+    private void reject(JournalRecord row, Exception cause) {
+        try {
+            rejected.append(row.toBytes());
+            rejected.sync();
+            rejectedCount.incrementAndGet();
+            plugin.getLogger().log(Level.SEVERE, "Database rejected a write; moved it to " + rejected.getFile().getName(), cause);
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Database rejected a write and it could not be set aside; it is lost", cause);
+            plugin.getLogger().log(Level.SEVERE, "Could not write to " + rejected.getFile().getName(), ex);
+        }
+    }
+
+    private void journal(JournalRecord record) {
+        try {
+            journal.append(record.toBytes());
+            journaledCount.incrementAndGet();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not journal a database write; it is lost", ex);
+            return;
+        }
+        for (Listener l : listeners)
+            l.journaled(record);
+    }
+
+    /**
+     * Writes journaled records to the database in order, if it is reachable.
+     * Stops at the first connection failure and keeps the rest for the next attempt.
+     * Records journaled while this runs stay for the next attempt.
+     */
+    void replay() {
+        List<byte[]> records;
+        synchronized (lock) {
+            if (replaying || journal.isEmpty())
+                return;
+            try {
+                records = journal.readAll();
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not read write journal", ex);
+                return;
+            }
+            if (!breaker.allowRequest())
+                return;
+            replaying = true;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            int done = 0;
+            SQLException failure = null;
+            // Not under the lock; later writes see a non-empty journal and are appended behind these
+            try (Connection c = ds.getConnection()) {
+                for (; done < records.size(); done++) {
+                    JournalRecord r = decode(records.get(done));
+                    if (r != null)
+                        applyByRow(c, r);
+                }
+            } catch (SQLException ex) {
+                failure = ex;
+            } catch (RuntimeException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Replaying journaled database writes failed unexpectedly", ex);
+            } finally {
+                if (failure == null)
+                    breaker.recordSuccess();
+                else
+                    breaker.recordFailure(failure);
+            }
+
+            replayedCount.addAndGet(done);
+            if (done != records.size())
+                plugin.getLogger().warning("Replayed " + done + " of " + records.size() + " journaled database writes; retrying the rest later");
+            else
+                plugin.getLogger().info("Replayed " + done + " journaled database writes in " + (System.currentTimeMillis() - start) + " ms");
+            if (done != 0 || records.isEmpty())
+                dropReplayed(done);
+        } finally {
+            synchronized (lock) {
+                replaying = false;
+            }
+        }
+    }
+
+    /**
+     * Removes the first count records, which have been written, and keeps any journaled since.
+     */
+    private void dropReplayed(int count) {
+        synchronized (lock) {
+            try {
+                List<byte[]> records = journal.readAll();
+                if (records.size() > count) {
+                    journal.rewrite(new ArrayList<>(records.subList(count, records.size())));
+                    return;
+                }
+                journal.clear();
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not rewrite write journal", ex);
+                return;
+            }
+            for (Listener l : listeners)
+                l.drained();
+        }
+    }
+
+    private static void apply(Connection c, JournalRecord record) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            record.apply(c);
+            c.commit();
+        } catch (SQLException | RuntimeException ex) {
+            try {
+                c.rollback();
+            } catch (SQLException ignore) {}
+            throw ex;
+        } finally {
+            try {
+                c.setAutoCommit(true);
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    private JournalRecord decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte type = in.readByte();
+            JournalRecord.Decoder decoder = decoders.get(type);
+            if (decoder == null) {
+                plugin.getLogger().severe("Unknown journaled write type " + type + "; skipping it");
+                return null;
+            }
+            return decoder.decode(in);
+        } catch (IOException | RuntimeException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Corrupt journaled write; skipping it", ex);
+            return null;
+        }
+    }
+
+    private void sync() {
+        try {
+            journal.sync();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not sync write journal", ex);
+        }
+    }
+
+    boolean isEmpty() {
+        return journal.isEmpty();
+    }
+
+    int getJournalSize() {
+        return journal.size();
+    }
+
+    long getJournaledCount() {
+        return journaledCount.get();
+    }
+
+    long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    /**
+     * @return rows moved to the rejected file since startup
+     */
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    void close() {
+        syncTask.cancel();
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not close write journal", ex);
+        }
+        try {
+            rejected.close();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not close rejected writes file", ex);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ * Bucket i counts samples under 2^i microseconds; the last bucket is open-ended.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        long c = count.get();
+        return c == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / c);
+    }
+
+    public long getTotalMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(totalNanos.get());
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, in microseconds
+     */
+    public long getPercentileMicros(double percentile) {
+        long c = count.get();
+        if (c == 0)
+            return 0;
+
+        long target = (long) Math.ceil(c * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target)
+                return i == BUCKETS - 1 ? getMaxMicros() : 1L << i;
+        }
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets.set(i, 0);
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + getCount()
+                + " mean=" + getMeanMicros() + "us"
+                + " p50<" + getPercentileMicros(50) + "us"
+                + " p90<" + getPercentileMicros(90) + "us"
+                + " p99<" + getPercentileMicros(99) + "us"
+                + " max=" + getMaxMicros() + "us";
+    }
+}
@@ -0,0 +1,575 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.module.NewsModule;
+import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
+import com.arcaneminecraft.bungee.module.data.DirectoryData;
+import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed storage for running without a database.
+ * Every change is applied to an in-memory index and appended to storage.log in the plugin folder.
+ * Appends are written in order by one worker thread, so callers never wait on the disk.
+ * The log is replayed on startup, and rewritten with one record per player once it has grown
+ * well past the number of players.
+ * <pre>
+ * int magic "ABPL", int version
+ * records: int length, int crc32, byte[length] payload
+ * player payload: byte 1, int id, long msb, long lsb, UTF name, long firstseen, long lastseen (0 if never),
+ *                 boolean+UTF timezone, long discord, boolean+UTF reddit, int options
+ * news payload:   byte 2, long timestamp, boolean+long+long author, UTF content
+ * report payload: byte 3, then as in the write journal (latest record per ID wins)
+ * name payload:   byte 4, long msb, long lsb, UTF past name, long changed
+ * </pre>
+ */
+public class LocalDatabase implements PlayerStore, NewsStore, ReportStore {
+    private static final int MAGIC = 0x4142504C;
+    private static final int VERSION = 1;
+    private static final byte PLAYER = 1;
+    private static final byte NEWS = 2;
+    private static final byte REPORT = 3;
+    private static final byte NAME = 4;
+    // Above any record that can be written: the largest, a report, has three writeUTF strings of up to 65535 bytes each
+    private static final int MAX_RECORD = 1 << 18;
+    // Compact once the log holds this many more records than it needs
+    private static final int COMPACT_SLACK = 10000;
+
+    private final ArcaneBungee plugin;
+    private final File file;
+    private final Map<UUID, Row> players = new HashMap<>();
+    private final Map<Long, UUID> discordToPlayer = new HashMap<>();
+    private final List<NewsModule.Entry> news = new ArrayList<>();
+    private final Map<Integer, ReportDatabase.Report> reports = new HashMap<>();
+    // Past names by UUID and lowercase name, so a name used twice is kept once
+    private final Map<String, PastName> pastNames = new HashMap<>();
+    private int lastId = 0;
+    private int records = 0;
+    private DataOutputStream out;
+    private final ExecutorService writer;
+
+    public LocalDatabase(ArcaneBungee plugin) throws IOException {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "storage.log");
+
+        long start = System.currentTimeMillis();
+        replay();
+        if (records > players.size() + news.size() + reports.size() + pastNames.size() + COMPACT_SLACK)
+            compact();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (file.length() == 0) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+        this.writer = Executors.newSingleThreadExecutor(plugin.getBlockingThreads().factory("ArcaneBungee-Local-"));
+
+        DirectoryData data = new DirectoryData(players.size());
+        Map<UUID, Long> links = new HashMap<>();
+        for (Row row : players.values()) {
+            data.add(row.id, row.uuid.getMostSignificantBits(), row.uuid.getLeastSignificantBits(), row.name, row.lastSeen);
+            if (row.discord != 0)
+                links.put(row.uuid, row.discord);
+        }
+        plugin.getMinecraftPlayerModule().load(data);
+        plugin.getDiscordUserModule().load(links);
+        for (PastName n : pastNames.values())
+            plugin.getMinecraftPlayerModule().addPastName(n.uuid, n.name, n.changed);
+        plugin.getMinecraftPlayerModule().buildNameFilter();
+        if (!news.isEmpty())
+            plugin.getNewsModule().setLatest(news.get(news.size() - 1));
+
+        plugin.getLogger().info("Loaded " + players.size() + " players from local storage in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void replay() throws IOException {
+        if (!file.isFile())
+            return;
+        if (file.length() < 8) {
+            // Crashed before the header was written
+            Files.delete(file.toPath());
+            return;
+        }
+
+        long good = 8;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a local storage file: " + file);
+
+            CRC32 crc = new CRC32();
+            byte[] buf = new byte[256];
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int sum = in.readInt();
+                if (len <= 0 || len > MAX_RECORD)
+                    throw new EOFException();
+                if (len > buf.length)
+                    buf = new byte[len];
+                in.readFully(buf, 0, len);
+                crc.reset();
+                crc.update(buf, 0, len);
+                if ((int) crc.getValue() != sum)
+                    throw new EOFException();
+
+                apply(new DataInputStream(new ByteArrayInputStream(buf, 0, len)));
+                records++;
+                good += 8 + len;
+            }
+        } catch (EOFException e) {
+            // Torn write from a crash; drop the partial record
+            plugin.getLogger().warning("Local storage ends with a partial record; truncating at byte " + good);
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == PLAYER) {
+            Row row = new Row(in.readInt(), new UUID(in.readLong(), in.readLong()), in.readUTF(), in.readLong());
+            row.lastSeen = in.readLong();
+            row.timezone = in.readBoolean() ? in.readUTF() : null;
+            row.discord = in.readLong();
+            row.reddit = in.readBoolean() ? in.readUTF() : null;
+            row.options = in.readInt();
+
+            Row old = players.put(row.uuid, row);
+            if (old != null && old.discord != 0)
+                discordToPlayer.remove(old.discord, old.uuid);
+            if (row.discord != 0)
+                discordToPlayer.put(row.discord, row.uuid);
+            if (row.id > lastId)
+                lastId = row.id;
+        } else if (type == NEWS) {
+            Timestamp time = new Timestamp(in.readLong());
+            UUID author = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            news.add(new NewsModule.Entry(news.size() + 1, author, time, in.readUTF()));
+        } else if (type == REPORT) {
+            ReportDatabase.Report r = ReportWriteQueue.decodeReport(in);
+            reports.put(r.getId(), r);
+        } else if (type == NAME) {
+            PastName n = new PastName(new UUID(in.readLong(), in.readLong()), in.readUTF(), in.readLong());
+            pastNames.put(n.key(), n);
+        } else {
+            throw new IOException("Unknown record type " + type + " in " + file);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the current state, then moves it into place.
+     */
+    private void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            o.writeInt(MAGIC);
+            o.writeInt(VERSION);
+            for (Row row : players.values())
+                writeRecord(o, encode(row));
+            for (NewsModule.Entry e : news)
+                writeRecord(o, encode(e));
+            for (ReportDatabase.Report r : reports.values())
+                writeRecord(o, encode(r));
+            for (PastName n : pastNames.values())
+                writeRecord(o, encode(n));
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        int count = players.size() + news.size() + reports.size() + pastNames.size();
+        plugin.getLogger().info("Compacted local storage from " + records + " to " + count
+                + " records in " + (System.currentTimeMillis() - start) + " ms");
+        records = count;
+    }
+
+    private static byte[] encode(Row row) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(96);
+        DataOutputStream o = new DataOutputStream(b);
+        o.writeByte(PLAYER);
+        o.writeInt(row.id);
+        o.writeLong(row.uuid.getMostSignificantBits());
+        o.writeLong(row.uuid.getLeastSignificantBits());
+        o.writeUTF(row.name);
+        o.writeLong(row.firstSeen);
+        o.writeLong(row.lastSeen);
+        writeNullable(o, row.timezone);
+        o.writeLong(row.discord);
+        writeNullable(o, row.reddit);
+        o.writeInt(row.options);
+        return b.toByteArray();
+    }
+
+    private static byte[] encode(NewsModule.Entry e) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(256);
+        DataOutputStream o = new DataOutputStream(b);
+        o.writeByte(NEWS);
+        o.writeLong(e.getTime().getTime());
+        o.writeBoolean(e.getAuthor() != null);
+        if (e.getAuthor() != null) {
+            o.writeLong(e.getAuthor().getMostSignificantBits());
+            o.writeLong(e.getAuthor().getLeastSignificantBits());
+        }
+        o.writeUTF(e.getContent());
+        return b.toByteArray();
+    }
+
+    private static byte[] encode(ReportDatabase.Report r) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(256);
+        DataOutputStream o = new DataOutputStream(b);
+        o.writeByte(REPORT);
+        ReportWriteQueue.encodeReport(o, r);
+        return b.toByteArray();
+    }
+
+    private static byte[] encode(PastName n) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(64);
+        DataOutputStream o = new DataOutputStream(b);
+        o.writeByte(NAME);
+        o.writeLong(n.uuid.getMostSignificantBits());
+        o.writeLong(n.uuid.getLeastSignificantBits());
+        o.writeUTF(n.name);
+        o.writeLong(n.changed);
+        return b.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream o, String s) throws IOException {
+        o.writeBoolean(s != null);
+        if (s != null)
+            o.writeUTF(s);
+    }
+
+    private static void writeRecord(DataOutputStream o, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        o.writeInt(payload.length);
+        o.writeInt((int) crc.getValue());
+        o.write(payload);
+    }
+
+    private void append(Row row) {
+        try {
+            append(encode(row));
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not write player " + row.uuid + " to local storage", ex);
+        }
+    }
+
+    /**
+     * @throws IOException if the record is larger than replay accepts, which would otherwise
+     *                     be taken for corruption and cut off with everything after it
+     */
+    private void append(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD)
+            throw new IOException("Record of " + payload.length + " bytes is too large for local storage");
+        if (out == null)
+            throw new IOException("Local storage is closed");
+        DataOutputStream o = out;
+        writer.execute(() -> {
+            try {
+                writeRecord(o, payload);
+                o.flush();
+            } catch (IOException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not write to local storage", ex);
+            }
+        });
+        records++;
+    }
+
+    /**
+     * Waits for queued appends to be written, then closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (out == null)
+            return;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                plugin.getLogger().severe("Timed out writing to local storage; recent changes may be lost");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not close local storage", ex);
+        }
+        out = null;
+    }
+
+    @Override
+    public synchronized CompletableFuture<ArcanePlayer> playerJoin(ProxiedPlayer p) {
+        UUID uuid = p.getUniqueId();
+        Row row = players.get(uuid);
+        String oldName;
+        if (row == null) {
+            row = new Row(++lastId, uuid, p.getName(), System.currentTimeMillis());
+            players.put(uuid, row);
+            oldName = "";
+            append(row);
+        } else {
+            oldName = row.name;
+            if (!oldName.equals(p.getName())) {
+                row.name = p.getName();
+                append(row);
+            }
+            if (!oldName.equalsIgnoreCase(p.getName())) {
+                PastName n = new PastName(uuid, oldName, System.currentTimeMillis());
+                pastNames.put(n.key(), n);
+                try {
+                    append(encode(n));
+                } catch (IOException ex) {
+                    plugin.getLogger().log(Level.SEVERE, "Could not write past name of " + uuid + " to local storage", ex);
+                }
+            }
+        }
+        return CompletableFuture.completedFuture(row.toPlayer(oldName));
+    }
+
+    @Override
+    public synchronized CompletableFuture<ArcanePlayer> fetchPlayerData(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null ? null : row.toPlayer(row.name));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Map<UUID, ArcanePlayer>> fetchPlayerData(Collection<UUID> uuids) {
+        Map<UUID, ArcanePlayer> ret = new HashMap<>();
+        for (UUID uuid : uuids) {
+            Row row = players.get(uuid);
+            if (row != null)
+                ret.put(uuid, row.toPlayer(row.name));
+        }
+        return CompletableFuture.completedFuture(ret);
+    }
+
+    @Override
+    public synchronized void updatePlayer(ArcanePlayer p) {
+        Row row = players.get(p.getUniqueID());
+        if (row == null)
+            return;
+        int dirty = p.getDirtyFields();
+        row.lastSeen = System.currentTimeMillis();
+        if ((dirty & ArcanePlayer.OPTIONS) != 0)
+            row.options = p.getOptions();
+        if ((dirty & ArcanePlayer.TIMEZONE) != 0)
+            row.timezone = p.getTimezone() == null ? null : p.getTimezone().getID();
+        if ((dirty & ArcanePlayer.REDDIT) != 0)
+            row.reddit = p.getReddit() == null ? null : p.getReddit().substring(3);
+        if ((dirty & ArcanePlayer.DISCORD) != 0)
+            link(row, p.getDiscord());
+        append(row);
+        p.clearDirty(dirty);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Timestamp> getFirstSeen(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null ? null : new Timestamp(row.firstSeen));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Timestamp> getLastSeen(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null || row.lastSeen == 0 ? null : new Timestamp(row.lastSeen));
+    }
+
+    @Override
+    public synchronized void setTimeZone(UUID uuid, TimeZone timeZone) {
+        Row row = players.get(uuid);
+        if (row == null)
+            return;
+        row.timezone = timeZone == null ? null : timeZone.getID();
+        append(row);
+    }
+
+    @Override
+    public synchronized CompletableFuture<TimeZone> getTimeZone(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null || row.timezone == null ? null : TimeZone.getTimeZone(row.timezone));
+    }
+
+    @Override
+    public synchronized void setOption(UUID uuid, int options) {
+        Row row = players.get(uuid);
+        if (row == null)
+            return;
+        row.options = options;
+        append(row);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Integer> getOptions(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null ? 0 : row.options);
+    }
+
+    @Override
+    public synchronized void setDiscord(UUID uuid, long id) {
+        Row row = players.get(uuid);
+        if (row == null)
+            return;
+        link(row, id);
+        append(row);
+    }
+
+    private void link(Row row, long id) {
+        if (row.discord != 0)
+            discordToPlayer.remove(row.discord, row.uuid);
+        if (id != 0) {
+            UUID other = discordToPlayer.put(id, row.uuid);
+            Row otherRow = other == null || other.equals(row.uuid) ? null : players.get(other);
+            if (otherRow != null) {
+                otherRow.discord = 0;
+                append(otherRow);
+            }
+        }
+        row.discord = id;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Long> getDiscord(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null ? 0L : row.discord);
+    }
+
+    @Override
+    public synchronized void setReddit(UUID uuid, String reddit) {
+        Row row = players.get(uuid);
+        if (row == null)
+            return;
+        row.reddit = reddit;
+        append(row);
+    }
+
+    @Override
+    public synchronized CompletableFuture<String> getReddit(UUID uuid) {
+        Row row = players.get(uuid);
+        return CompletableFuture.completedFuture(row == null ? null : row.reddit);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> addNews(UUID author, String content) {
+        NewsModule.Entry e = new NewsModule.Entry(news.size() + 1, author, new Timestamp(System.currentTimeMillis()), content);
+        try {
+            append(encode(e));
+        } catch (IOException ex) {
+            CompletableFuture<Void> ret = new CompletableFuture<>();
+            ret.completeExceptionally(ex);
+            return ret;
+        }
+        news.add(e);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Entry IDs are positions in the news list, starting at 1.
+     */
+    @Override
+    public synchronized CompletableFuture<List<NewsModule.Entry>> fetchNews(int beforeId, int limit) {
+        List<NewsModule.Entry> ret = new ArrayList<>(limit);
+        for (int i = Math.min(beforeId - 1, news.size()) - 1; i >= 0 && ret.size() < limit; i--)
+            ret.add(news.get(i));
+        return CompletableFuture.completedFuture(ret);
+    }
+
+    @Override
+    public synchronized CompletableFuture<List<ReportDatabase.Report>> fetchOpenReports() {
+        List<ReportDatabase.Report> ret = new ArrayList<>();
+        for (ReportDatabase.Report r : reports.values()) {
+            if (!r.isClosed())
+                ret.add(r.copy());
+        }
+        return CompletableFuture.completedFuture(ret);
+    }
+
+    @Override
+    public synchronized CompletableFuture<ReportDatabase.Report> fetchReport(int id) {
+        ReportDatabase.Report r = reports.get(id);
+        return CompletableFuture.completedFuture(r == null ? null : r.copy());
+    }
+
+    // Only this proxy uses the file, so the next ID is the highest so far plus one
+    @Override
+    public synchronized CompletableFuture<Integer> insertReport(ReportDatabase.Report report) {
+        int id = 1;
+        for (int used : reports.keySet())
+            id = Math.max(id, used + 1);
+        saveReport(new ReportDatabase.Report(id, report.getUser(), report.getLocation(), report.getBody(),
+                report.getOpen(), report.getLast(), report.getPriority(), report.isClosed()));
+        return CompletableFuture.completedFuture(id);
+    }
+
+    @Override
+    public synchronized void saveReport(ReportDatabase.Report report) {
+        ReportDatabase.Report r = report.copy();
+        reports.put(r.getId(), r);
+        try {
+            append(encode(r));
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not write report " + r.getId() + " to local storage", ex);
+        }
+    }
+
+    private static final class PastName {
+        private final UUID uuid;
+        private final String name;
+        private final long changed;
+
+        private PastName(UUID uuid, String name, long changed) {
+            this.uuid = uuid;
+            this.name = name;
+            this.changed = changed;
+        }
+
+        private String key() {
+            return uuid + "/" + name.toLowerCase();
+        }
+    }
+
+    private static final class Row {
+        private final int id;
+        private final UUID uuid;
+        private final long firstSeen;
+        private String name;
+        private long lastSeen;
+        private String timezone;
+        private long discord;
+        private String reddit;
+        private int options;
+
+        private Row(int id, UUID uuid, String name, long firstSeen) {
+            this.id = id;
+            this.uuid = uuid;
+            this.name = name;
+            this.firstSeen = firstSeen;
+        }
+
+        private ArcanePlayer toPlayer(String oldName) {
+            return new ArcanePlayer(uuid, id, oldName,
+                    new Timestamp(firstSeen),
+                    lastSeen == 0 ? null : new Timestamp(lastSeen),
+                    timezone == null ? null : TimeZone.getTimeZone(timezone),
+                    discord, reddit, options);
+        }
+    }
+}
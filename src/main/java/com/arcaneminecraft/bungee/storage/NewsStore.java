@@ -0,0 +1,31 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.module.NewsModule;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where news entries are kept.
+ * On startup an implementation passes the latest entry to NewsModule.
+ */
+public interface NewsStore {
+    /**
+     * @param author null if posted from the console
+     * @return completes once the entry is stored, or journaled if the database is down
+     */
+    CompletableFuture<Void> addNews(UUID author, String content);
+
+    /**
+     * Fetches entries older than beforeId, newest first.
+     * @param beforeId exclusive upper bound on entry ID; Integer.MAX_VALUE for the latest
+     * @return up to limit entries, or null if they could not be read
+     */
+    CompletableFuture<List<NewsModule.Entry>> fetchNews(int beforeId, int limit);
+
+    /**
+     * Writes out anything pending and releases resources. Called on plugin disable.
+     */
+    void close();
+}
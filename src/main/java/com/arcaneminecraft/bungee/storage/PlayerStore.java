@@ -0,0 +1,74 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where player data is kept.
+ * Futures never fail; lookups complete with null (or 0) when the player is unknown or the backend is unavailable.
+ * On startup an implementation loads the name directory and name history into MinecraftPlayerModule,
+ * and Discord links into DiscordUserModule.
+ */
+public interface PlayerStore {
+    /**
+     * Inserts the player or updates their username. A replaced username is kept in the name history.
+     * @return the player's data, with the previous username or "" if they are new
+     */
+    CompletableFuture<ArcanePlayer> playerJoin(ProxiedPlayer p);
+
+    /**
+     * @return future of the player's data, or of null if they never joined
+     */
+    CompletableFuture<ArcanePlayer> fetchPlayerData(UUID uuid);
+
+    /**
+     * @return players by UUID; players that never joined are left out
+     */
+    CompletableFuture<Map<UUID, ArcanePlayer>> fetchPlayerData(Collection<UUID> uuids);
+
+    /**
+     * Saves a leaving player's changed fields (see {@link ArcanePlayer#getDirtyFields()}) and sets their last seen time to now.
+     */
+    void updatePlayer(ArcanePlayer p);
+
+    CompletableFuture<Timestamp> getFirstSeen(UUID uuid);
+
+    CompletableFuture<Timestamp> getLastSeen(UUID uuid);
+
+    void setTimeZone(UUID uuid, TimeZone timeZone);
+
+    CompletableFuture<TimeZone> getTimeZone(UUID uuid);
+
+    void setOption(UUID uuid, int options);
+
+    CompletableFuture<Integer> getOptions(UUID uuid);
+
+    /**
+     * Links a Discord ID, unlinking it from any other player. 0 unlinks.
+     */
+    void setDiscord(UUID uuid, long id);
+
+    CompletableFuture<Long> getDiscord(UUID uuid);
+
+    /**
+     * @param reddit username without the /u/ prefix, or null
+     */
+    void setReddit(UUID uuid, String reddit);
+
+    /**
+     * @return username without the /u/ prefix, or null
+     */
+    CompletableFuture<String> getReddit(UUID uuid);
+
+    /**
+     * Writes out anything pending and releases resources. Called on plugin disable.
+     */
+    void close();
+}
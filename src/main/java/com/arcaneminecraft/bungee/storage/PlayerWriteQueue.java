@@ -0,0 +1,420 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for ab_players updates and ab_discord links.
+ * Changes are merged per player and written in JDBC batches, either every
+ * flush interval or as soon as batch-size players have pending changes.
+ * A batch being written stays visible to {@link #getPending(UUID)} until the write returns;
+ * batches that cannot be written go to the write journal, and stay visible until it is replayed.
+ */
+public class PlayerWriteQueue implements JournaledWriter.Listener {
+    static final int LAST_SEEN = 1;
+    static final int OPTIONS = 1 << 1;
+    static final int TIMEZONE = 1 << 2;
+    static final int DISCORD = 1 << 3;
+    static final int REDDIT = 1 << 4;
+
+    // Indexed by bit; DISCORD is kept in ab_discord instead
+    private static final String[] COLUMNS = {"lastseen", "options", "timezone", null, "reddit"};
+    // Keyed on both discord and uuid_bin, so this also drops the ID from any other player and the player's old ID
+    private static final String DISCORD_REPLACE = "REPLACE INTO ab_discord(discord, uuid_bin) VALUES(?, ?)";
+    private static final String DISCORD_DELETE_BY_UUID = "DELETE FROM ab_discord WHERE uuid_bin=?";
+
+    private static final Map<Integer, String> updateStatements = new HashMap<>();
+
+    private final JournaledWriter writer;
+    private final StorageExecutor executor;
+    private final int batchSize;
+    private final Map<UUID, Pending> pending = new LinkedHashMap<>();
+    // Copies of the batch being written
+    private final Map<UUID, Pending> inFlight = new HashMap<>();
+    private final Map<UUID, Pending> journaled = new HashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledTask task;
+    private boolean flushQueued = false;
+
+    PlayerWriteQueue(ArcaneBungee plugin, JournaledWriter writer, StorageExecutor executor) {
+        this.writer = writer;
+        this.executor = executor;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("mariadb.write-behind.batch-size", 100));
+        long interval = Math.max(1, plugin.getConfig().getInt("mariadb.write-behind.flush-interval", 5));
+        // If the lane is full, changes stay pending until the next tick
+        this.task = plugin.getProxy().getScheduler().schedule(plugin,
+                () -> executor.offer(StorageExecutor.Lane.WRITE, this::flush),
+                interval, interval, TimeUnit.SECONDS);
+
+        writer.register(JournalRecord.PLAYER_BATCH, PlayerBatch::decode);
+        writer.addListener(this);
+    }
+
+    /**
+     * Sets last seen, and only the other columns in mask.
+     */
+    void updatePlayer(UUID uuid, Timestamp lastSeen, int mask, int options, String timezone, long discord, String reddit) {
+        synchronized (pending) {
+            Pending p = get(uuid);
+            p.lastSeen = lastSeen;
+            if ((mask & OPTIONS) != 0)
+                p.options = options;
+            if ((mask & TIMEZONE) != 0)
+                p.timezone = timezone;
+            if ((mask & DISCORD) != 0)
+                p.discord = discord;
+            if ((mask & REDDIT) != 0)
+                p.reddit = reddit;
+            p.mask |= LAST_SEEN | mask;
+        }
+        checkSize();
+    }
+
+    void setOptions(UUID uuid, int options) {
+        synchronized (pending) {
+            Pending p = get(uuid);
+            p.options = options;
+            p.mask |= OPTIONS;
+        }
+        checkSize();
+    }
+
+    void setTimeZone(UUID uuid, String timezone) {
+        synchronized (pending) {
+            Pending p = get(uuid);
+            p.timezone = timezone;
+            p.mask |= TIMEZONE;
+        }
+        checkSize();
+    }
+
+    /**
+     * Links a Discord ID to the player, or unlinks with 0. Any other player holding the same ID,
+     * pending or already stored, is unlinked on the next flush.
+     */
+    void setDiscord(UUID uuid, long discord) {
+        synchronized (pending) {
+            if (discord != 0) {
+                unlink(pending.values(), discord);
+                // Not written yet either, so the old owner would still look linked
+                unlink(inFlight.values(), discord);
+                unlink(journaled.values(), discord);
+            }
+            Pending p = get(uuid);
+            p.discord = discord;
+            p.mask |= DISCORD;
+        }
+        checkSize();
+    }
+
+    private static void unlink(Collection<Pending> players, long discord) {
+        for (Pending other : players) {
+            if (other.discord == discord && (other.mask & DISCORD) != 0)
+                other.discord = 0;
+        }
+    }
+
+    void setReddit(UUID uuid, String reddit) {
+        synchronized (pending) {
+            Pending p = get(uuid);
+            p.reddit = reddit;
+            p.mask |= REDDIT;
+        }
+        checkSize();
+    }
+
+    /**
+     * @return copy of the changes not yet written for this player, or null if there are none
+     */
+    Pending getPending(UUID uuid) {
+        synchronized (pending) {
+            Pending ret = null;
+            // Newest first
+            for (Map<UUID, Pending> m : Arrays.asList(pending, inFlight, journaled)) {
+                Pending p = m.get(uuid);
+                if (p == null)
+                    continue;
+                if (ret == null)
+                    ret = p.copy();
+                else
+                    ret.mergeOlder(p);
+            }
+            return ret;
+        }
+    }
+
+    @Override
+    public void journaled(JournalRecord record) {
+        if (!(record instanceof PlayerBatch))
+            return;
+        synchronized (pending) {
+            for (Pending p : ((PlayerBatch) record).players) {
+                Pending newer = p.copy();
+                Pending older = journaled.put(p.uuid, newer);
+                if (older != null)
+                    newer.mergeOlder(older);
+            }
+        }
+    }
+
+    @Override
+    public void drained() {
+        synchronized (pending) {
+            journaled.clear();
+        }
+    }
+
+    private Pending get(UUID uuid) {
+        return pending.computeIfAbsent(uuid, Pending::new);
+    }
+
+    private void checkSize() {
+        synchronized (pending) {
+            if (flushQueued || pending.size() < batchSize)
+                return;
+            flushQueued = true;
+        }
+        // Never block the caller; the timer picks it up if the lane is full
+        if (!executor.offer(StorageExecutor.Lane.WRITE, this::flush)) {
+            synchronized (pending) {
+                flushQueued = false;
+            }
+        }
+    }
+
+    /**
+     * Writes out every pending change. Safe to call from any thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Pending> toWrite;
+            synchronized (pending) {
+                flushQueued = false;
+                if (pending.isEmpty())
+                    return;
+                toWrite = new ArrayList<>(pending.values());
+                pending.clear();
+                for (Pending p : toWrite)
+                    inFlight.put(p.uuid, p.copy());
+            }
+
+            try {
+                writer.write(new PlayerBatch(toWrite));
+            } finally {
+                // Written, or journaled and so kept in journaled
+                synchronized (pending) {
+                    inFlight.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the flush timer and writes out what is left. Called on plugin disable.
+     */
+    void close() {
+        task.cancel();
+        flush();
+    }
+
+    private static String getUpdateStatement(int mask) {
+        synchronized (updateStatements) {
+            return updateStatements.computeIfAbsent(mask, m -> {
+                StringJoiner set = new StringJoiner(",", "UPDATE ab_players SET ", " WHERE uuid_bin=?");
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    if ((m & (1 << i)) != 0)
+                        set.add(COLUMNS[i] + "=?");
+                }
+                return set.toString();
+            });
+        }
+    }
+
+    /**
+     * One flush worth of player updates.
+     */
+    static final class PlayerBatch extends JournalRecord {
+        private final List<Pending> players;
+
+        private PlayerBatch(List<Pending> players) {
+            this.players = players;
+        }
+
+        @Override
+        byte getType() {
+            return PLAYER_BATCH;
+        }
+
+        @Override
+        List<JournalRecord> split() {
+            if (players.size() <= 1)
+                return Collections.singletonList(this);
+            // Unlinks first, as in apply
+            List<JournalRecord> ret = new ArrayList<>(players.size());
+            for (Pending p : players) {
+                if (p.has(DISCORD) && p.discord == 0)
+                    ret.add(new PlayerBatch(Collections.singletonList(p)));
+            }
+            for (Pending p : players) {
+                if (!p.has(DISCORD) || p.discord != 0)
+                    ret.add(new PlayerBatch(Collections.singletonList(p)));
+            }
+            return ret;
+        }
+
+        @Override
+        void apply(Connection c) throws SQLException {
+            // Unlinks before links, so an ID moved within this batch ends up on its new player
+            List<Pending> links = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(DISCORD_DELETE_BY_UUID)) {
+                boolean any = false;
+                for (Pending p : players) {
+                    if (!p.has(DISCORD))
+                        continue;
+                    if (p.discord != 0) {
+                        links.add(p);
+                        continue;
+                    }
+                    ps.setBytes(1, UUIDCodec.toBytes(p.uuid));
+                    ps.addBatch();
+                    any = true;
+                }
+                if (any)
+                    ps.executeBatch();
+            }
+            if (!links.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(DISCORD_REPLACE)) {
+                    for (Pending p : links) {
+                        ps.setLong(1, p.discord);
+                        ps.setBytes(2, UUIDCodec.toBytes(p.uuid));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+
+            // Group by changed columns so each group is one batch
+            Map<Integer, List<Pending>> byMask = new HashMap<>();
+            for (Pending p : players) {
+                int columns = p.mask & ~DISCORD;
+                if (columns != 0)
+                    byMask.computeIfAbsent(columns, k -> new ArrayList<>()).add(p);
+            }
+
+            for (Map.Entry<Integer, List<Pending>> e : byMask.entrySet()) {
+                int mask = e.getKey();
+                try (PreparedStatement ps = c.prepareStatement(getUpdateStatement(mask))) {
+                    for (Pending p : e.getValue()) {
+                        int i = 1;
+                        if ((mask & LAST_SEEN) != 0)
+                            ps.setTimestamp(i++, p.lastSeen);
+                        if ((mask & OPTIONS) != 0)
+                            ps.setInt(i++, p.options);
+                        if ((mask & TIMEZONE) != 0)
+                            ps.setString(i++, p.timezone);
+                        if ((mask & REDDIT) != 0)
+                            ps.setString(i++, p.reddit);
+                        ps.setBytes(i, UUIDCodec.toBytes(p.uuid));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            out.writeInt(players.size());
+            for (Pending p : players) {
+                out.writeLong(p.uuid.getMostSignificantBits());
+                out.writeLong(p.uuid.getLeastSignificantBits());
+                out.writeInt(p.mask);
+                if (p.has(LAST_SEEN))
+                    out.writeLong(p.lastSeen.getTime());
+                if (p.has(OPTIONS))
+                    out.writeInt(p.options);
+                if (p.has(TIMEZONE))
+                    writeNullable(out, p.timezone);
+                if (p.has(DISCORD))
+                    out.writeLong(p.discord);
+                if (p.has(REDDIT))
+                    writeNullable(out, p.reddit);
+            }
+        }
+
+        private static PlayerBatch decode(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<Pending> players = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Pending p = new Pending(new UUID(in.readLong(), in.readLong()));
+                p.mask = in.readInt();
+                if (p.has(LAST_SEEN))
+                    p.lastSeen = new Timestamp(in.readLong());
+                if (p.has(OPTIONS))
+                    p.options = in.readInt();
+                if (p.has(TIMEZONE))
+                    p.timezone = readNullable(in);
+                if (p.has(DISCORD))
+                    p.discord = in.readLong();
+                if (p.has(REDDIT))
+                    p.reddit = readNullable(in);
+                players.add(p);
+            }
+            return new PlayerBatch(players);
+        }
+    }
+
+    static final class Pending {
+        final UUID uuid;
+        int mask;
+        Timestamp lastSeen;
+        int options;
+        String timezone;
+        long discord;
+        String reddit;
+
+        private Pending(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        private Pending copy() {
+            Pending p = new Pending(uuid);
+            p.mask = mask;
+            p.lastSeen = lastSeen;
+            p.options = options;
+            p.timezone = timezone;
+            p.discord = discord;
+            p.reddit = reddit;
+            return p;
+        }
+
+        private void mergeOlder(Pending old) {
+            int missing = old.mask & ~mask;
+            if ((missing & LAST_SEEN) != 0)
+                lastSeen = old.lastSeen;
+            if ((missing & OPTIONS) != 0)
+                options = old.options;
+            if ((missing & TIMEZONE) != 0)
+                timezone = old.timezone;
+            if ((missing & DISCORD) != 0)
+                discord = old.discord;
+            if ((missing & REDDIT) != 0)
+                reddit = old.reddit;
+            mask |= missing;
+        }
+
+        boolean has(int field) {
+            return (mask & field) != 0;
+        }
+    }
+}
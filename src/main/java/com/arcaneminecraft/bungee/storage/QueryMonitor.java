@@ -0,0 +1,264 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.ArcaneBungee;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Times every statement run through a wrapped DataSource, and how long getting a connection from the pool takes.
+ * Statements slower than mariadb.slow-query-log.threshold are written to slow-queries.log, which rotates at max-size.
+ * Only execute calls are timed. Result sets are passed through as they are, so reading rows costs nothing extra.
+ */
+public class QueryMonitor {
+    // Bulk IN (?, ?, ...) lists vary in length; count them as one statement
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final int MAX_STATEMENTS = 200;
+    private static final String OTHER = "(other)";
+
+    public static class Stats {
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong slow = new AtomicLong();
+
+        private Stats(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return rows changed by updates; rows read by queries are not counted
+         */
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getSlow() {
+            return slow.get();
+        }
+    }
+
+    private final Logger logger;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final AtomicLong acquireErrors = new AtomicLong();
+    private final long slowNanos;
+    private final File slowLog;
+    private final long slowLogMaxSize;
+    private final int slowLogFiles;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private Writer slowWriter;
+
+    QueryMonitor(ArcaneBungee plugin) {
+        this.logger = plugin.getLogger();
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, plugin.getConfig().getInt("mariadb.slow-query-log.threshold", 200)));
+        this.slowLog = new File(plugin.getDataFolder(), "slow-queries.log");
+        this.slowLogMaxSize = Math.max(1, plugin.getConfig().getInt("mariadb.slow-query-log.max-size", 1024)) * 1024L;
+        this.slowLogFiles = Math.max(1, plugin.getConfig().getInt("mariadb.slow-query-log.files", 3));
+    }
+
+    /**
+     * @return a DataSource whose connections report to this monitor
+     */
+    DataSource wrap(DataSource ds) {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            if (!method.getName().equals("getConnection"))
+                return invoke(ds, method, args);
+            long start = System.nanoTime();
+            try {
+                Connection c = (Connection) invoke(ds, method, args);
+                acquire.record(System.nanoTime() - start);
+                return wrap(c);
+            } catch (SQLException ex) {
+                acquireErrors.incrementAndGet();
+                throw ex;
+            }
+        });
+    }
+
+    private Connection wrap(Connection c) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            Object ret = invoke(c, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return wrap((PreparedStatement) ret, PreparedStatement.class, getStats((String) args[0]));
+                case "prepareCall":
+                    return wrap((CallableStatement) ret, CallableStatement.class, getStats((String) args[0]));
+                case "createStatement":
+                    return wrap((Statement) ret, Statement.class, null);
+                default:
+                    return ret;
+            }
+        });
+    }
+
+    /**
+     * @param prepared stats for the prepared SQL, or null for a plain Statement that takes SQL on execute
+     */
+    private <T extends Statement> T wrap(T st, Class<T> type, Stats prepared) {
+        return proxy(type, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute"))
+                return invoke(st, method, args);
+
+            Stats s = prepared;
+            if (s == null)
+                s = args != null && args.length != 0 && args[0] instanceof String ? getStats((String) args[0]) : getStats(OTHER);
+
+            long start = System.nanoTime();
+            Object ret;
+            try {
+                ret = invoke(st, method, args);
+            } catch (SQLException ex) {
+                s.errors.incrementAndGet();
+                s.latency.record(System.nanoTime() - start);
+                throw ex;
+            }
+            long elapsed = System.nanoTime() - start;
+            s.latency.record(elapsed);
+
+            long rows = -1;
+            if (ret instanceof Integer) {
+                rows = (Integer) ret;
+            } else if (ret instanceof Long) {
+                rows = (Long) ret;
+            } else if (ret instanceof int[]) {
+                rows = 0;
+                for (int n : (int[]) ret)
+                    rows += Math.max(0, n);
+            }
+            if (rows > 0)
+                s.rows.addAndGet(rows);
+
+            if (elapsed >= slowNanos) {
+                s.slow.incrementAndGet();
+                logSlow(s.sql, elapsed, rows);
+            }
+            return ret;
+        });
+    }
+
+    private Stats getStats(String sql) {
+        Stats s = stats.get(sql);
+        if (s != null)
+            return s;
+        String key = PARAMETER_LIST.matcher(sql).replaceAll("?, ...");
+        if (stats.size() >= MAX_STATEMENTS && !stats.containsKey(key))
+            key = OTHER;
+        return stats.computeIfAbsent(key, Stats::new);
+    }
+
+    private synchronized void logSlow(String sql, long nanos, long rows) {
+        try {
+            if (slowWriter == null) {
+                rotate();
+                slowWriter = new FileWriter(slowLog, true);
+            }
+            slowWriter.write(dateFormat.format(new Date()) + " " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms"
+                    + (rows >= 0 ? " rows=" + rows : "") + " " + sql.replace('\n', ' ') + "\n");
+            slowWriter.flush();
+            if (slowLog.length() >= slowLogMaxSize) {
+                slowWriter.close();
+                slowWriter = null;
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Could not write " + slowLog.getName(), ex);
+        }
+    }
+
+    /**
+     * Moves slow-queries.log to slow-queries.log.1 and so on if it is full, dropping the oldest.
+     */
+    private void rotate() {
+        if (slowLog.length() < slowLogMaxSize)
+            return;
+        File parent = slowLog.getParentFile();
+        String name = slowLog.getName();
+        new File(parent, name + "." + (slowLogFiles - 1)).delete();
+        for (int i = slowLogFiles - 2; i >= 0; i--) {
+            File from = i == 0 ? slowLog : new File(parent, name + "." + i);
+            if (from.exists())
+                from.renameTo(new File(parent, name + "." + (i + 1)));
+        }
+    }
+
+    /**
+     * @return statements by total time spent, most first
+     */
+    public List<Stats> getTop(int n) {
+        List<Stats> ret = new ArrayList<>(stats.values());
+        ret.sort((a, b) -> Long.compare(b.latency.getTotalMicros(), a.latency.getTotalMicros()));
+        return ret.size() > n ? ret.subList(0, n) : ret;
+    }
+
+    public LatencyHistogram getAcquireLatency() {
+        return acquire;
+    }
+
+    public long getAcquireErrors() {
+        return acquireErrors.get();
+    }
+
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowNanos);
+    }
+
+    public void reset() {
+        stats.clear();
+        acquire.reset();
+        acquireErrors.set(0);
+    }
+
+    synchronized void close() {
+        if (slowWriter == null)
+            return;
+        try {
+            slowWriter.close();
+        } catch (IOException ignore) {}
+        slowWriter = null;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryMonitor.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,38 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where reports are kept. ReportDatabase holds the working set in memory and saves through this.
+ * Futures never fail; they complete with null when the backend is unavailable.
+ */
+public interface ReportStore {
+    /**
+     * @return every report that is not closed, including saves not yet written
+     */
+    CompletableFuture<List<ReportDatabase.Report>> fetchOpenReports();
+
+    /**
+     * @return the report, or null if there is none with this ID
+     */
+    CompletableFuture<ReportDatabase.Report> fetchReport(int id);
+
+    /**
+     * Inserts a new report, ignoring its ID, and lets the backend assign one.
+     * @return the assigned ID, or null if the report could not be inserted
+     */
+    CompletableFuture<Integer> insertReport(ReportDatabase.Report report);
+
+    /**
+     * Updates a report inserted by {@link #insertReport}. The report is copied, so the caller may keep changing it.
+     */
+    void saveReport(ReportDatabase.Report report);
+
+    /**
+     * Writes out anything pending and releases resources. Called on plugin disable.
+     */
+    void close();
+}
@@ -0,0 +1,190 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write queue for ab_reports.
+ * Saves are merged per report and upserted in one JDBC batch on the write-behind flush interval.
+ * Like {@link PlayerWriteQueue}, batches that go to the write journal stay visible to
+ * {@link #getPending()} until the journal is replayed.
+ */
+class ReportWriteQueue implements JournaledWriter.Listener {
+    private static final String REPORT_UPSERT = "INSERT INTO ab_reports(id,uuid,body,server,world,x,y,z,open,last,priority,closed) "
+            + "VALUES(?,?,?,?,?,?,?,?,?,?,?,?) "
+            + "ON DUPLICATE KEY UPDATE last=VALUES(last),priority=VALUES(priority),closed=VALUES(closed)";
+
+    private final JournaledWriter writer;
+    private final Map<Integer, ReportDatabase.Report> pending = new LinkedHashMap<>();
+    private final Map<Integer, ReportDatabase.Report> journaled = new HashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledTask task;
+
+    ReportWriteQueue(ArcaneBungee plugin, JournaledWriter writer, StorageExecutor executor) {
+        this.writer = writer;
+        long interval = Math.max(1, plugin.getConfig().getInt("mariadb.write-behind.flush-interval", 5));
+        // If the lane is full, changes stay pending until the next tick
+        this.task = plugin.getProxy().getScheduler().schedule(plugin,
+                () -> executor.offer(StorageExecutor.Lane.WRITE, this::flush),
+                interval, interval, TimeUnit.SECONDS);
+
+        writer.register(JournalRecord.REPORTS, ReportBatch::decode);
+        writer.addListener(this);
+    }
+
+    void save(ReportDatabase.Report report) {
+        synchronized (pending) {
+            pending.put(report.getId(), report.copy());
+        }
+    }
+
+    /**
+     * @return reports saved but not yet written, newest save of each
+     */
+    Map<Integer, ReportDatabase.Report> getPending() {
+        synchronized (pending) {
+            Map<Integer, ReportDatabase.Report> ret = new HashMap<>(journaled);
+            ret.putAll(pending);
+            return ret;
+        }
+    }
+
+    @Override
+    public void journaled(JournalRecord record) {
+        if (!(record instanceof ReportBatch))
+            return;
+        synchronized (pending) {
+            for (ReportDatabase.Report r : ((ReportBatch) record).reports)
+                journaled.put(r.getId(), r);
+        }
+    }
+
+    @Override
+    public void drained() {
+        synchronized (pending) {
+            journaled.clear();
+        }
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            List<ReportDatabase.Report> toWrite;
+            synchronized (pending) {
+                if (pending.isEmpty())
+                    return;
+                toWrite = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            writer.write(new ReportBatch(toWrite));
+        }
+    }
+
+    void close() {
+        task.cancel();
+        flush();
+    }
+
+    /**
+     * One flush worth of report saves.
+     */
+    static final class ReportBatch extends JournalRecord {
+        private final List<ReportDatabase.Report> reports;
+
+        private ReportBatch(List<ReportDatabase.Report> reports) {
+            this.reports = reports;
+        }
+
+        @Override
+        byte getType() {
+            return REPORTS;
+        }
+
+        @Override
+        List<JournalRecord> split() {
+            if (reports.size() <= 1)
+                return Collections.singletonList(this);
+            List<JournalRecord> ret = new ArrayList<>(reports.size());
+            for (ReportDatabase.Report r : reports)
+                ret.add(new ReportBatch(Collections.singletonList(r)));
+            return ret;
+        }
+
+        @Override
+        void apply(Connection c) throws SQLException {
+            try (PreparedStatement ps = c.prepareStatement(REPORT_UPSERT)) {
+                for (ReportDatabase.Report r : reports) {
+                    ReportDatabase.Location l = r.getLocation();
+                    ps.setInt(1, r.getId());
+                    ps.setString(2, r.getUser().toString());
+                    ps.setString(3, r.getBody());
+                    ps.setString(4, l.getServer());
+                    ps.setString(5, l.getWorld());
+                    ps.setInt(6, l.getX());
+                    ps.setInt(7, l.getY());
+                    ps.setInt(8, l.getZ());
+                    ps.setTimestamp(9, new Timestamp(r.getOpen().getTime()));
+                    ps.setTimestamp(10, new Timestamp(r.getLast().getTime()));
+                    ps.setInt(11, r.getPriority().getValue());
+                    ps.setBoolean(12, r.isClosed());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            out.writeInt(reports.size());
+            for (ReportDatabase.Report r : reports)
+                encodeReport(out, r);
+        }
+
+        private static ReportBatch decode(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<ReportDatabase.Report> reports = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                reports.add(decodeReport(in));
+            return new ReportBatch(reports);
+        }
+    }
+
+    static void encodeReport(DataOutputStream out, ReportDatabase.Report r) throws IOException {
+        ReportDatabase.Location l = r.getLocation();
+        out.writeInt(r.getId());
+        out.writeLong(r.getUser().getMostSignificantBits());
+        out.writeLong(r.getUser().getLeastSignificantBits());
+        out.writeUTF(r.getBody());
+        out.writeUTF(l.getServer());
+        out.writeUTF(l.getWorld());
+        out.writeInt(l.getX());
+        out.writeInt(l.getY());
+        out.writeInt(l.getZ());
+        out.writeLong(r.getOpen().getTime());
+        out.writeLong(r.getLast().getTime());
+        out.writeByte(r.getPriority().getValue());
+        out.writeBoolean(r.isClosed());
+    }
+
+    static ReportDatabase.Report decodeReport(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        UUID user = new UUID(in.readLong(), in.readLong());
+        String body = in.readUTF();
+        ReportDatabase.Location l = new ReportDatabase.Location(in.readUTF(), in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+        Date open = new Date(in.readLong());
+        Date last = new Date(in.readLong());
+        ReportDatabase.Priority priority = ReportDatabase.Priority.fromValue(in.readByte());
+        return new ReportDatabase.Report(id, user, l, body, open, last, priority, in.readBoolean());
+    }
+}
@@ -5,59 +5,117 @@ import com.arcaneminecraft.bungee.module.DiscordUserModule;
 import com.arcaneminecraft.bungee.module.MinecraftPlayerModule;
 import com.arcaneminecraft.bungee.module.NewsModule;
 import com.arcaneminecraft.bungee.module.data.ArcanePlayer;
+import com.arcaneminecraft.bungee.module.data.DirectoryData;
 import com.arcaneminecraft.bungee.storage.sql.ReportDatabase;
-import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
 import org.mariadb.jdbc.MariaDbPoolDataSource;
 
+import javax.sql.DataSource;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
-import java.util.Objects;
-import java.util.TimeZone;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
 
 /**
- * SQL Database must be MariaDB.
+ * SQL Database must be MariaDB. Tables are created and upgraded on startup by {@link SchemaMigrator}.
  * ab_players:
- * Stores: String uuid, String username, Timestamp firstseen, Timestamp lastseen, String timezone, long discord, int options
+ * Stores: byte[16] uuid_bin, String uuid (only while mariadb.uuid-compat is on), String username, Timestamp firstseen, Timestamp lastseen, String timezone, String reddit, int options
+ *
+ * ab_discord:
+ * Stores: long discord, byte[16] uuid_bin; each unique, so a player has at most one link and a Discord user at most one player
  *
  * ab_news:
  * Stores: int id, String content, Timestamp timestamp, String username, String uuid
  *
  * ab_reports:
- * Stores: String uuid, String body, String server, String world, int x, int y, int z, int priority,
+ * Stores: int id, String uuid, String body, String server, String world, int x, int y, int z, Timestamp open, Timestamp last, int priority, boolean closed
  */
-public class SQLDatabase {
+public class SQLDatabase implements PlayerStore, NewsStore, ReportStore {
     private static SQLDatabase instance;
 
-    private static final String PLAYER_INSERT = "INSERT INTO ab_players(uuid, username) VALUES(?, ?)";
-    private static final String PLAYER_SELECT_BY_UUID = "SELECT * FROM ab_players WHERE uuid=? LIMIT 1";
-    private static final String PLAYER_SELECT_LATEST_ID = "SELECT id FROM ab_players ORDER BY id DESC LIMIT 1";
+    private static final String PLAYER_JOIN = "{CALL ab_player_join(?, ?)}";
+    private static final String PLAYER_SELECT_BY_UUID = "SELECT p.id,p.username,p.firstseen,p.lastseen,p.timezone,d.discord,p.reddit,p.options "
+            + "FROM ab_players p LEFT JOIN ab_discord d ON d.uuid_bin=p.uuid_bin WHERE p.uuid_bin=? LIMIT 1";
+    // Followed by one ? per UUID and a closing parenthesis
+    private static final String PLAYER_SELECT_BY_UUIDS = "SELECT p.uuid_bin,p.id,p.username,p.firstseen,p.lastseen,p.timezone,d.discord,p.reddit,p.options "
+            + "FROM ab_players p LEFT JOIN ab_discord d ON d.uuid_bin=p.uuid_bin WHERE p.uuid_bin IN (";
     //private static final String PLAYER_SELECT_BY_USERNAME = "SELECT * FROM ab_players WHERE UPPER(username)=? LIMIT 1";
-    private static final String PLAYER_SELECT_ALL_USERNAME_AND_UUID_AND_DISCORD = "SELECT username,uuid,discord FROM ab_players";
+    private static final String PLAYER_SELECT_ID_AND_USERNAME_AND_UUID_AND_LASTSEEN_AFTER_ID = "SELECT id,username,uuid_bin,lastseen FROM ab_players WHERE id>? ORDER BY id LIMIT ?";
+    private static final String PLAYER_SELECT_ID_AND_USERNAME_AND_UUID_AFTER_ID_OR_SEEN_SINCE = "SELECT id,username,uuid_bin FROM ab_players WHERE id>? OR lastseen>=?";
     //private static final String PLAYER_SELECT_ALL_UUID_BY_USERNAME = "SELECT uuid FROM ab_players WHERE UPPER(username)=?";
-    private static final String PLAYER_SELECT_TIMEZONE_BY_UUID = "SELECT timezone FROM ab_players WHERE uuid=?";
-    private static final String PLAYER_SELECT_DISCORD_BY_UUID = "SELECT discord FROM ab_players WHERE uuid=?";
-    private static final String PLAYER_SELECT_REDDIT_BY_UUID = "SELECT reddit FROM ab_players WHERE uuid=?";
-    private static final String PLAYER_SELECT_OPTIONS_BY_UUID = "SELECT options FROM ab_players WHERE uuid=?";
-    private static final String PLAYER_UPDATE_TIMEZONE_BY_UUID = "UPDATE ab_players SET timezone=? WHERE uuid=?";
-    private static final String PLAYER_UPDATE_USERNAME = "UPDATE ab_players SET username=? WHERE uuid=?";
-    private static final String PLAYER_UPDATE_LAST_SEEN_AND_OPTIONS_AND_TIMEZONE_AND_DISCORD_AND_REDDIT = "UPDATE ab_players SET lastseen=?,options=?,timezone=?,discord=?,reddit=?  WHERE uuid=?";
-    private static final String PLAYER_UPDATE_DISCORD_BY_DISCORD = "UPDATE ab_players SET discord=? WHERE discord=?";
-    private static final String PLAYER_UPDATE_DISCORD_BY_UUID = "UPDATE ab_players SET discord=? WHERE uuid=?";
-    private static final String PLAYER_UPDATE_REDDIT_BY_UUID = "UPDATE ab_players SET reddit=? WHERE uuid=?";
-    private static final String PLAYER_UPDATE_OPTIONS_BY_UUID = "UPDATE ab_players SET options=? WHERE uuid=?";
-
-    //private static final String REPORT_INSERT = "INSERT INTO ab_reports(id, uuid, body) VALUES(?, ?, ?)";
-    private static final String REPORT_UPDATE_LAST_AND_PRIORITY_BY_ID = "UPDATE ab_reports SET last=?,priority=? WHERE id=?";
-
-    private static final String NEWS_SELECT_LATEST_TIMESTAMP_AND_UUID_AND_CONTENT = "SELECT timestamp,uuid,content FROM ab_news ORDER BY id DESC LIMIT 1";
-    //private static final String NEWS_SELECT_ALL_ID_AND_TIMESTAMP_AND_UUID_AND_CONTENT = "SELECT id,timestamp,uuid,content FROM ab_news";
-    private static final String NEWS_INSERT_NEWS = "INSERT INTO ab_news(content, uuid) VALUES(?, ?)";
+    private static final String PLAYER_SELECT_FIRSTSEEN_BY_UUID = "SELECT firstseen FROM ab_players WHERE uuid_bin=?";
+    private static final String PLAYER_SELECT_LASTSEEN_BY_UUID = "SELECT lastseen FROM ab_players WHERE uuid_bin=?";
+    private static final String PLAYER_SELECT_TIMEZONE_BY_UUID = "SELECT timezone FROM ab_players WHERE uuid_bin=?";
+    private static final String PLAYER_SELECT_DISCORD_BY_UUID = "SELECT discord FROM ab_discord WHERE uuid_bin=?";
+    private static final String PLAYER_SELECT_REDDIT_BY_UUID = "SELECT reddit FROM ab_players WHERE uuid_bin=?";
+    private static final String PLAYER_SELECT_OPTIONS_BY_UUID = "SELECT options FROM ab_players WHERE uuid_bin=?";
+
+    private static final String DISCORD_SELECT_ALL = "SELECT discord,uuid_bin FROM ab_discord";
+    private static final String PLAYER_NAMES_SELECT_ALL = "SELECT uuid_bin,username,changed FROM ab_player_names";
+
+    private static final String REPORT_SELECT_OPEN = "SELECT id,uuid,body,server,world,x,y,z,open,last,priority,closed FROM ab_reports WHERE closed=FALSE";
+    private static final String REPORT_SELECT_BY_ID = "SELECT id,uuid,body,server,world,x,y,z,open,last,priority,closed FROM ab_reports WHERE id=?";
+    private static final String REPORT_INSERT = "INSERT INTO ab_reports(uuid,body,server,world,x,y,z,open,last,priority,closed) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String NEWS_SELECT_LATEST_ID_AND_TIMESTAMP_AND_UUID_AND_CONTENT = "SELECT id,timestamp,uuid,content FROM ab_news ORDER BY id DESC LIMIT 1";
+    private static final String NEWS_SELECT_ID_AND_TIMESTAMP_AND_UUID_AND_CONTENT_BEFORE_ID = "SELECT id,timestamp,uuid,content FROM ab_news WHERE id<? ORDER BY id DESC LIMIT ?";
+    private static final String NEWS_INSERT_NEWS = "INSERT INTO ab_news(content, uuid, timestamp) VALUES(?, ?, ?)";
+
+    // Inserts or renames the player and returns the row with the previous username, in one round-trip.
+    // Username is '' for a new player.
+    private static final String PROCEDURE_PLAYER_JOIN = "ab_player_join";
+    private static final String PROCEDURE_PLAYER_JOIN_PARAMETERS = "IN p_uuid BINARY(16), IN p_username VARCHAR(36)";
+    private static final String PROCEDURE_PLAYER_JOIN_BODY = "BEGIN\n"
+            + "  DECLARE old_name VARCHAR(36);\n"
+            + "  SET old_name = (SELECT username FROM ab_players WHERE uuid_bin=p_uuid LIMIT 1);\n"
+            + "  IF old_name IS NULL THEN\n"
+            + "    %s;\n"
+            + "    SELECT id, '' AS username, firstseen, NULL AS lastseen, timezone, 0 AS discord, reddit, options FROM ab_players WHERE id=LAST_INSERT_ID();\n"
+            + "  ELSE\n"
+            + "    IF BINARY old_name <> p_username THEN\n"
+            + "      UPDATE ab_players SET username=p_username WHERE uuid_bin=p_uuid;\n"
+            + "    END IF;\n"
+            // Case-insensitive, so a change of case alone is not history
+            + "    IF old_name <> p_username THEN\n"
+            + "      INSERT INTO ab_player_names(uuid_bin, username) VALUES(p_uuid, old_name) ON DUPLICATE KEY UPDATE changed=CURRENT_TIMESTAMP;\n"
+            + "    END IF;\n"
+            + "    SELECT id, old_name AS username, firstseen, lastseen, timezone, (SELECT discord FROM ab_discord WHERE uuid_bin=p_uuid) AS discord, reddit, options FROM ab_players WHERE uuid_bin=p_uuid LIMIT 1;\n"
+            + "  END IF;\n"
+            + "END";
+    private static final String PROCEDURE_PLAYER_JOIN_INSERT = "INSERT INTO ab_players(uuid_bin, username) VALUES(p_uuid, p_username)";
+    // Also fills the old text column, formatted as 8-4-4-4-12 lowercase hex
+    private static final String PROCEDURE_PLAYER_JOIN_INSERT_COMPAT = "INSERT INTO ab_players(uuid_bin, uuid, username) VALUES(p_uuid, "
+            + "LOWER(CONCAT_WS('-', SUBSTR(HEX(p_uuid),1,8), SUBSTR(HEX(p_uuid),9,4), SUBSTR(HEX(p_uuid),13,4), SUBSTR(HEX(p_uuid),17,4), SUBSTR(HEX(p_uuid),21))), "
+            + "p_username)";
+
+    // Once mariadb.uuid-compat is off, the old text column is no longer written
+    private static final String PLAYER_UUID_TEXT_NULLABLE = "ALTER TABLE ab_players MODIFY uuid VARCHAR(36) NULL";
+
+    // Upper bound on UUIDs bound into one IN (...) query
+    private static final int BULK_CHUNK_SIZE = 500;
 
     private final ArcaneBungee plugin;
     private final MariaDbPoolDataSource ds;
-
+    // The pool, with every statement timed by the monitor
+    private final DataSource db;
+    private final QueryMonitor monitor;
+    private final StorageExecutor executor;
+    private final CircuitBreaker breaker;
+    private final JournaledWriter writer;
+    private final PlayerWriteQueue writeQueue;
+    private final ReportWriteQueue reportQueue;
+    private final ScheduledTask replayTask;
+    private final LatencyHistogram joinLatency;
 
     public SQLDatabase(ArcaneBungee plugin) throws SQLException {
         SQLDatabase.instance = this;
@@ -74,9 +132,16 @@ public class SQLDatabase {
         ds.setPassword(pass);
         ds.setLoginTimeout(10); // localhost connection shouldn't take long
 
+        // One worker per pooled connection so workers never wait on the pool
+        int poolSize = Math.max(1, plugin.getConfig().getInt("mariadb.pool-size", 8));
+        ds.setMaxPoolSize(poolSize);
+
+        this.monitor = new QueryMonitor(plugin);
+        this.db = monitor.wrap(ds);
+
         // Ping/test the server
         long timer = System.currentTimeMillis();
-        try (Connection c = ds.getConnection()) {
+        try (Connection c = db.getConnection()) {
             c.prepareStatement("/* ping */ SELECT 1").executeQuery().close();
         }
         long time = System.currentTimeMillis() - timer;
@@ -84,405 +149,668 @@ public class SQLDatabase {
             plugin.getLogger().warning("Connecting to database takes over 1 second: " + time);
         }
 
+        // While on, the old VARCHAR uuid column is kept filled for anything else still reading it
+        boolean uuidCompat = plugin.getConfig().getBoolean("mariadb.uuid-compat", true);
+
+        try (Connection c = db.getConnection()) {
+            // Under the migration lock, so proxies starting together don't replace the procedure at once
+            new SchemaMigrator(plugin.getLogger()).migrate(c, m -> {
+                String body = String.format(PROCEDURE_PLAYER_JOIN_BODY, uuidCompat ? PROCEDURE_PLAYER_JOIN_INSERT_COMPAT : PROCEDURE_PLAYER_JOIN_INSERT);
+                if (SchemaMigrator.replaceProcedure(m, PROCEDURE_PLAYER_JOIN, PROCEDURE_PLAYER_JOIN_PARAMETERS, body))
+                    plugin.getLogger().info("Updated stored procedure " + PROCEDURE_PLAYER_JOIN);
+                // Only the first time; altering the table copies it
+                if (!uuidCompat && SchemaMigrator.isNotNull(m, "ab_players", "uuid")) {
+                    try (Statement st = m.createStatement()) {
+                        st.execute(PLAYER_UUID_TEXT_NULLABLE);
+                    }
+                    plugin.getLogger().info("mariadb.uuid-compat is off: ab_players.uuid is no longer written and can be dropped");
+                }
+            });
+        }
+
+        this.executor = new StorageExecutor(plugin.getLogger(),
+                plugin.getBlockingThreads().factory("ArcaneBungee-DB-"), poolSize, Math.max(1, plugin.getConfig().getInt("mariadb.queue-size", 1000)));
+        this.breaker = new CircuitBreaker(plugin.getLogger(),
+                Math.max(1, plugin.getConfig().getInt("mariadb.circuit-breaker.failure-threshold", 3)),
+                Math.max(1, plugin.getConfig().getInt("mariadb.circuit-breaker.retry-after", 10)), TimeUnit.SECONDS);
+        try {
+            this.writer = new JournaledWriter(plugin, db, breaker,
+                    new File(plugin.getDataFolder(), "journal.log"), new File(plugin.getDataFolder(), "rejected.log"));
+        } catch (IOException ex) {
+            throw new SQLException("Could not open write journal", ex);
+        }
+        writer.register(JournalRecord.NEWS, NewsRecord::decode);
+        this.writeQueue = new PlayerWriteQueue(plugin, writer, executor);
+        this.reportQueue = new ReportWriteQueue(plugin, writer, executor);
+
+        // Drain writes journaled during an outage, including any left from the last run
+        executor.offer(StorageExecutor.Lane.WRITE, writer::replay);
+        long replayInterval = Math.max(1, plugin.getConfig().getInt("mariadb.journal.replay-interval", 5));
+        this.replayTask = plugin.getProxy().getScheduler().schedule(plugin, () -> {
+            if (!writer.isEmpty())
+                executor.offer(StorageExecutor.Lane.WRITE, writer::replay);
+        }, replayInterval, replayInterval, TimeUnit.SECONDS);
+        this.joinLatency = plugin.getConfig().getBoolean("mariadb.join-latency-histogram", false)
+                ? new LatencyHistogram()
+                : null;
+
         final MinecraftPlayerModule mcModule = plugin.getMinecraftPlayerModule();
         final DiscordUserModule dcModule = plugin.getDiscordUserModule();
         final NewsModule nModule = plugin.getNewsModule();
 
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(PLAYER_SELECT_ALL_USERNAME_AND_UUID_AND_DISCORD)) {
-                    ResultSet rs = ps.executeQuery();
+        final int chunkSize = Math.max(1, plugin.getConfig().getInt("mariadb.load-chunk-size", 5000));
+        final long snapshotMaxAge = TimeUnit.HOURS.toMillis(plugin.getConfig().getInt("mariadb.snapshot-max-age", 24));
 
-                    while(rs.next()) {
-                        String n = rs.getString("username");
-                        UUID u = UUID.fromString(rs.getString("uuid"));
-                        long d = rs.getLong("discord");
+        executor.execute(StorageExecutor.Lane.READ, () -> {
+            // The snapshot is read on another thread while the plugin starts
+            mcModule.awaitSnapshot();
+            long snapshotCreated = mcModule.getSnapshotCreated();
+            int snapshotId = mcModule.getMaxId();
+            boolean snapshotFresh = snapshotCreated != 0 && System.currentTimeMillis() - snapshotCreated < snapshotMaxAge;
 
-                        mcModule.put(u, n);
-                        if (d != 0)
-                        dcModule.put(u, d);
-                    }
+            try (Connection c = db.getConnection()) {
+                if (snapshotFresh) {
+                    // Only catch up on players created or seen since the snapshot
+                    loadDirectoryDelta(c, snapshotId, snapshotCreated, mcModule);
+                } else {
+                    mcModule.load(loadDirectory(c, chunkSize));
                 }
-                try (PreparedStatement ps = c.prepareStatement(NEWS_SELECT_LATEST_TIMESTAMP_AND_UUID_AND_CONTENT)) {
-                    ResultSet rs = ps.executeQuery();
+                mcModule.buildNameFilter();
+                mcModule.saveSnapshot();
 
-                    rs.next();
-                    String authorUUID = rs.getString("uuid");
-
-                    Timestamp t = rs.getTimestamp("timestamp");
-                    UUID author = authorUUID == null ? null : UUID.fromString(authorUUID);
-                    String content = rs.getString("content");
-
-                    nModule.setLatest(new NewsModule.Entry(author, t, content));
+                try (PreparedStatement ps = c.prepareStatement(NEWS_SELECT_LATEST_ID_AND_TIMESTAMP_AND_UUID_AND_CONTENT);
+                     ResultSet rs = ps.executeQuery()) {
+                    if (rs.next())
+                        nModule.setLatest(readNews(rs));
                 }
             } catch (SQLException ex) {
                 ex.printStackTrace();
             }
         });
+
+        // Links and past names are few next to players, so they are always read in full, apart from the directory
+        executor.execute(StorageExecutor.Lane.READ, () -> {
+            try (Connection c = db.getConnection()) {
+                dcModule.load(loadDiscordLinks(c));
+            } catch (SQLException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not load Discord links", ex);
+            }
+        });
+        executor.execute(StorageExecutor.Lane.READ, () -> {
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(PLAYER_NAMES_SELECT_ALL);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    mcModule.addPastName(UUIDCodec.fromBytes(rs.getBytes("uuid_bin")), rs.getString("username"),
+                            rs.getTimestamp("changed").getTime());
+            } catch (SQLException ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not load player name history", ex);
+            }
+        });
     }
 
     public static SQLDatabase getInstance() {
         return instance;
     }
 
-    private CompletableFuture<ResultSet> getPlayerResultSet(UUID uuid) {
-        CompletableFuture<ResultSet> future = new CompletableFuture<>();
+    /**
+     * Reads every player in id order, chunkSize rows per query.
+     */
+    private DirectoryData loadDirectory(Connection c, int chunkSize) throws SQLException {
+        DirectoryData data = new DirectoryData(chunkSize);
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        int lastId = 0;
+
+        try (PreparedStatement ps = c.prepareStatement(PLAYER_SELECT_ID_AND_USERNAME_AND_UUID_AND_LASTSEEN_AFTER_ID)) {
+            ps.setFetchSize(chunkSize);
+            int rows;
+            do {
+                ps.setInt(1, lastId);
+                ps.setInt(2, chunkSize);
+                rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] uuid = rs.getBytes("uuid_bin");
+                        lastId = rs.getInt("id");
+                        // Null until the player first leaves
+                        Timestamp seen = rs.getTimestamp("lastseen");
+                        data.add(lastId,
+                                UUIDCodec.readMostSignificantBits(uuid),
+                                UUIDCodec.readLeastSignificantBits(uuid),
+                                rs.getString("username"),
+                                seen == null ? 0 : seen.getTime());
+                        rows++;
+                    }
+                }
 
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                ResultSet rs;
-                try (PreparedStatement ps = c.prepareStatement(PLAYER_SELECT_BY_UUID)) {
-                    ps.setString(1, uuid.toString());
-                    rs = ps.executeQuery();
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= 2000) {
+                    plugin.getLogger().info("Loading player directory: " + data.size() + " players so far");
+                    lastReport = now;
                 }
+            } while (rows == chunkSize);
+        }
 
-                future.complete(rs);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                future.complete(null);
+        plugin.getLogger().info("Loaded " + data.size() + " players in " + (System.currentTimeMillis() - start) + " ms");
+        return data;
+    }
+
+    private void loadDirectoryDelta(Connection c, int lastId, long since, MinecraftPlayerModule mcModule) throws SQLException {
+        long start = System.currentTimeMillis();
+        int count = 0;
+
+        try (PreparedStatement ps = c.prepareStatement(PLAYER_SELECT_ID_AND_USERNAME_AND_UUID_AFTER_ID_OR_SEEN_SINCE)) {
+            ps.setFetchSize(1000);
+            ps.setInt(1, lastId);
+            // Allow for clock difference between the proxy and the database
+            ps.setTimestamp(2, new Timestamp(since - TimeUnit.HOURS.toMillis(1)));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    mcModule.put(UUIDCodec.fromBytes(rs.getBytes("uuid_bin")), rs.getString("username"), rs.getInt("id"));
+                    count++;
+                }
             }
-        });
-        return future;
+        }
+
+        plugin.getLogger().info("Updated " + count + " players since snapshot in " + (System.currentTimeMillis() - start) + " ms");
     }
 
-    public CompletableFuture<ArcanePlayer> playerJoin(ProxiedPlayer p) {
-        CompletableFuture<ArcanePlayer> future = fetchPlayerData(p.getUniqueId());
+    private Map<UUID, Long> loadDiscordLinks(Connection c) throws SQLException {
+        Map<UUID, Long> links = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(DISCORD_SELECT_ALL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next())
+                links.put(UUIDCodec.fromBytes(rs.getBytes("uuid_bin")), rs.getLong("discord"));
+        }
+        return links;
+    }
 
-        return future.thenApplyAsync(player -> {
-            if (future.isCompletedExceptionally()) {
-                return null;
-            }
+    /**
+     * Flushes pending player updates, or journals them if the database is down, and closes the connection pool.
+     */
+    @Override
+    public void close() {
+        replayTask.cancel();
+        writeQueue.close();
+        reportQueue.close();
+        executor.shutdown(30, TimeUnit.SECONDS);
+        writer.close();
+        ds.close();
+        monitor.close();
+        if (joinLatency != null)
+            plugin.getLogger().info("Player join latency: " + joinLatency);
+    }
 
-            if (player == null) {
-                try (Connection c = ds.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(PLAYER_INSERT)) {
-                        ps.setString(1, p.getUniqueId().toString());
-                        ps.setString(2, p.getName());
-                        if (ps.executeUpdate() != 0) {
-                            try (PreparedStatement ps2 = c.prepareStatement(PLAYER_SELECT_LATEST_ID)) {
-                                ResultSet rs2 = ps2.executeQuery();
-                                if (rs2.next()) {
-                                    int id = rs2.getInt("id");
-                                    return new ArcanePlayer(p.getUniqueId(), id);
-                                } else {
-                                    return new ArcanePlayer(p.getUniqueId(), -1);
-                                }
-                            }
-                        }
-                    }
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
-            }
+    public QueryMonitor getQueryMonitor() {
+        return monitor;
+    }
 
-            if (player != null && !player.getOldName().equals(p.getName())) {
-                // Username changed
-                try (Connection c = ds.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(PLAYER_UPDATE_USERNAME)) {
-                        ps.setString(1, p.getName());
-                        ps.setString(2, p.getUniqueId().toString());
-                        ps.executeUpdate();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-            return player;
-        });
+    /**
+     * @return join latency histogram, or null if mariadb.join-latency-histogram is disabled
+     */
+    public LatencyHistogram getJoinLatency() {
+        return joinLatency;
     }
 
+    public StorageExecutor getExecutor() {
+        return executor;
+    }
 
-    public CompletableFuture<ArcanePlayer> fetchPlayerData(UUID uuid) {
-        CompletableFuture<ArcanePlayer> future = new CompletableFuture<>();
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
 
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                ResultSet rs;
+    /**
+     * @return writes waiting in the journal for the database to come back
+     */
+    public int getJournalSize() {
+        return writer.getJournalSize();
+    }
 
-                // Get player info: player name
-                try (PreparedStatement ps = c.prepareStatement(PLAYER_SELECT_BY_UUID)) {
-                    ps.setString(1, uuid.toString());
-                    rs = ps.executeQuery();
-                }
+    public long getJournaledCount() {
+        return writer.getJournaledCount();
+    }
 
-                // Check if query returned any data.
-                if (!rs.next()) {
-                    // There is no data = did not login yet
-                    future.complete(null);
-                    return;
-                }
+    public long getReplayedCount() {
+        return writer.getReplayedCount();
+    }
 
-                String name = rs.getString("username");
-                int id = rs.getInt("id");
-                Timestamp firstseen = rs.getTimestamp("firstseen");
-                Timestamp lastseen = rs.getTimestamp("lastseen");
-                String tz = rs.getString("timezone"); // physical server location
-                TimeZone timeZone = tz == null ? null : TimeZone.getTimeZone(tz);
-                long discord = rs.getLong("discord");
-                String reddit = rs.getString("reddit");
-                int options = rs.getInt("options");
+    /**
+     * @return rows the database rejected since startup, kept in rejected.log
+     */
+    public long getRejectedCount() {
+        return writer.getRejectedCount();
+    }
 
-                // Query returned data; give username from database
-                future.complete(new ArcanePlayer(uuid, id, name, firstseen, lastseen, timeZone, discord, reddit, options));
+    private static <T> Function<Throwable, T> fallback(T value) {
+        return ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            // Already reported when the breaker opened
+            if (!(cause instanceof CircuitBreaker.OpenException))
+                ArcaneBungee.getInstance().getLogger().log(Level.WARNING, "Database query failed", cause);
+            return value;
+        };
+    }
 
+    /**
+     * Runs a task on a lane, failing fast with {@link CircuitBreaker.OpenException} while the database is down.
+     */
+    private <T> CompletableFuture<T> submit(StorageExecutor.Lane lane, Callable<T> task) {
+        return executor.submit(lane, () -> {
+            breaker.check();
+            SQLException failure = null;
+            try {
+                return task.call();
             } catch (SQLException ex) {
-                ex.printStackTrace();
-                // Fetch failed
-                future.completeExceptionally(ex);
+                failure = ex;
+                throw ex;
+            } finally {
+                // Also when the task throws anything else, so a probe always reports back
+                if (failure == null)
+                    breaker.recordSuccess();
+                else
+                    breaker.recordFailure(failure);
             }
         });
+    }
 
-        return future.exceptionally(ex -> null);
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
     }
 
-    public void updatePlayer(ArcanePlayer p) {
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(PLAYER_UPDATE_LAST_SEEN_AND_OPTIONS_AND_TIMEZONE_AND_DISCORD_AND_REDDIT)) {
-                    ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
-                    ps.setInt(2, p.getOptions());
-                    ps.setString(3, p.getTimezone() == null ? null : p.getTimezone().getID());
-                    ps.setLong(4, p.getDiscord());
-                    ps.setString(5, p.getReddit() == null ? null : p.getReddit().substring(3));
-                    ps.setString(6, p.getUniqueID().toString());
-                    ps.executeUpdate();
+    /**
+     * Runs a single-player projection query on the READ lane.
+     * The row is read into a value before the connection goes back to the pool.
+     * @param missing value when the player has no row or the query fails
+     */
+    private <T> CompletableFuture<T> queryPlayer(String sql, UUID uuid, RowReader<T> reader, T missing) {
+        return submit(StorageExecutor.Lane.READ, () -> {
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setBytes(1, UUIDCodec.toBytes(uuid));
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? reader.read(rs) : missing;
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
             }
-        });
+        }).exceptionally(fallback(missing));
     }
 
-    public CompletableFuture<Timestamp> getFirstSeen(UUID uuid) {
-        CompletableFuture<Timestamp> future = new CompletableFuture<>();
+    @Override
+    public CompletableFuture<ArcanePlayer> playerJoin(ProxiedPlayer p) {
+        UUID uuid = p.getUniqueId();
 
-        getPlayerResultSet(uuid).thenAcceptAsync(rs -> {
-            try {
-                if (rs.next()) {
-                    future.complete(rs.getTimestamp("firstseen"));
-                } else {
-                    future.complete(null);
+        return submit(StorageExecutor.Lane.LOGIN, () -> {
+            long start = System.nanoTime();
+            try (Connection c = db.getConnection()) {
+                try (CallableStatement cs = c.prepareCall(PLAYER_JOIN)) {
+                    cs.setBytes(1, UUIDCodec.toBytes(uuid));
+                    cs.setString(2, p.getName());
+
+                    try (ResultSet rs = cs.executeQuery()) {
+                        return rs.next() ? readPlayer(uuid, rs) : null;
+                    }
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                future.complete(null);
+            } finally {
+                if (joinLatency != null)
+                    joinLatency.record(System.nanoTime() - start);
             }
-        });
-
-        return future;
+        }).exceptionally(fallback(null));
     }
 
-    public CompletableFuture<Timestamp> getLastSeen(UUID uuid) {
-        CompletableFuture<Timestamp> future = new CompletableFuture<>();
+    @Override
+    public CompletableFuture<ArcanePlayer> fetchPlayerData(UUID uuid) {
+        // No row = did not login yet
+        return queryPlayer(PLAYER_SELECT_BY_UUID, uuid, rs -> readPlayer(uuid, rs), null);
+    }
 
-        getPlayerResultSet(uuid).thenAcceptAsync(rs -> {
-            try {
-                if (rs.next()) {
-                    future.complete(rs.getTimestamp("lastSeen"));
-                } else {
-                    future.complete(null);
+    /**
+     * Fetches many players with one query per {@value #BULK_CHUNK_SIZE} UUIDs.
+     * @return players by UUID; players that never joined are left out
+     */
+    @Override
+    public CompletableFuture<Map<UUID, ArcanePlayer>> fetchPlayerData(Collection<UUID> uuids) {
+        if (uuids.isEmpty())
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+
+        List<UUID> list = new ArrayList<>(new LinkedHashSet<>(uuids));
+        return submit(StorageExecutor.Lane.READ, () -> {
+            Map<UUID, ArcanePlayer> ret = new HashMap<>(list.size() * 4 / 3 + 1);
+            try (Connection c = db.getConnection()) {
+                for (int from = 0; from < list.size(); from += BULK_CHUNK_SIZE) {
+                    List<UUID> chunk = list.subList(from, Math.min(list.size(), from + BULK_CHUNK_SIZE));
+                    StringBuilder sql = new StringBuilder(PLAYER_SELECT_BY_UUIDS.length() + chunk.size() * 2);
+                    sql.append(PLAYER_SELECT_BY_UUIDS);
+                    for (int i = 0; i < chunk.size(); i++)
+                        sql.append(i == 0 ? "?" : ",?");
+                    sql.append(')');
+
+                    try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                        int i = 1;
+                        for (UUID uuid : chunk)
+                            ps.setBytes(i++, UUIDCodec.toBytes(uuid));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                UUID uuid = UUIDCodec.fromBytes(rs.getBytes("uuid_bin"));
+                                ret.put(uuid, readPlayer(uuid, rs));
+                            }
+                        }
+                    }
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                future.complete(null);
             }
-        });
+            return ret;
+        }).exceptionally(fallback(Collections.emptyMap()));
+    }
 
-        return future;
+    private ArcanePlayer readPlayer(UUID uuid, ResultSet rs) throws SQLException {
+        String name = rs.getString("username");
+        int id = rs.getInt("id");
+        Timestamp firstseen = rs.getTimestamp("firstseen");
+        Timestamp lastseen = rs.getTimestamp("lastseen");
+        String tz = rs.getString("timezone"); // physical server location
+        long discord = rs.getLong("discord");
+        String reddit = rs.getString("reddit");
+        int options = rs.getInt("options");
+
+        // Changes that are not written yet take precedence
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null) {
+            if (p.has(PlayerWriteQueue.LAST_SEEN))
+                lastseen = p.lastSeen;
+            if (p.has(PlayerWriteQueue.OPTIONS))
+                options = p.options;
+            if (p.has(PlayerWriteQueue.TIMEZONE))
+                tz = p.timezone;
+            if (p.has(PlayerWriteQueue.DISCORD))
+                discord = p.discord;
+            if (p.has(PlayerWriteQueue.REDDIT))
+                reddit = p.reddit;
+        }
+        return new ArcanePlayer(uuid, id, name, firstseen, lastseen, timeZone(tz), discord, reddit, options);
     }
 
-    public void setTimeZone(UUID uuid, TimeZone timeZone) {
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_UPDATE_TIMEZONE_BY_UUID)) {
-                    ps.setString(1, timeZone.getID());
-                    ps.setString(2, uuid.toString());
-                    ps.executeUpdate();
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-        });
+    private static TimeZone timeZone(String id) {
+        return id == null ? null : TimeZone.getTimeZone(id);
     }
 
-    public CompletableFuture<TimeZone> getTimeZone(UUID uuid) {
-        CompletableFuture<TimeZone> future = new CompletableFuture<>();
+    @Override
+    public void updatePlayer(ArcanePlayer p) {
+        // Only write what changed, so values set elsewhere in the meantime are not overwritten
+        int dirty = p.getDirtyFields();
+        int mask = 0;
+        if ((dirty & ArcanePlayer.OPTIONS) != 0)
+            mask |= PlayerWriteQueue.OPTIONS;
+        if ((dirty & ArcanePlayer.TIMEZONE) != 0)
+            mask |= PlayerWriteQueue.TIMEZONE;
+        if ((dirty & ArcanePlayer.REDDIT) != 0)
+            mask |= PlayerWriteQueue.REDDIT;
+
+        writeQueue.updatePlayer(
+                p.getUniqueID(),
+                new Timestamp(System.currentTimeMillis()),
+                mask,
+                p.getOptions(),
+                p.getTimezone() == null ? null : p.getTimezone().getID(),
+                0,
+                p.getReddit() == null ? null : p.getReddit().substring(3)
+        );
+        // Goes through setDiscord so the ID is also taken off any other pending player
+        if ((dirty & ArcanePlayer.DISCORD) != 0)
+            writeQueue.setDiscord(p.getUniqueID(), p.getDiscord());
+        p.clearDirty(dirty);
+    }
 
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-        try (Connection conn = ds.getConnection()) {
-            try (PreparedStatement ps = conn.prepareStatement(PLAYER_SELECT_TIMEZONE_BY_UUID)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
+    @Override
+    public CompletableFuture<Timestamp> getFirstSeen(UUID uuid) {
+        return queryPlayer(PLAYER_SELECT_FIRSTSEEN_BY_UUID, uuid, rs -> rs.getTimestamp("firstseen"), null);
+    }
 
-                if (rs.next()) {
-                    future.complete(TimeZone.getTimeZone(rs.getString("timezone")));
-                } else {
-                    future.complete(null);
-                }
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            future.complete(null);
-        }});
+    @Override
+    public CompletableFuture<Timestamp> getLastSeen(UUID uuid) {
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null && p.has(PlayerWriteQueue.LAST_SEEN))
+            return CompletableFuture.completedFuture(p.lastSeen);
 
-        return future;
+        return queryPlayer(PLAYER_SELECT_LASTSEEN_BY_UUID, uuid, rs -> rs.getTimestamp("lastseen"), null);
     }
 
+    @Override
+    public void setTimeZone(UUID uuid, TimeZone timeZone) {
+        writeQueue.setTimeZone(uuid, timeZone == null ? null : timeZone.getID());
+    }
+
+    @Override
+    public CompletableFuture<TimeZone> getTimeZone(UUID uuid) {
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null && p.has(PlayerWriteQueue.TIMEZONE))
+            return CompletableFuture.completedFuture(timeZone(p.timezone));
+
+        return queryPlayer(PLAYER_SELECT_TIMEZONE_BY_UUID, uuid, rs -> timeZone(rs.getString("timezone")), null);
+    }
+
+    @Override
     public void setOption(UUID uuid, int options) {
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_UPDATE_OPTIONS_BY_UUID)) {
-                    ps.setInt(1, options);
-                    ps.setString(2, uuid.toString());
-                    ps.executeUpdate();
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-        });
+        writeQueue.setOptions(uuid, options);
     }
 
+    @Override
     public CompletableFuture<Integer> getOptions(UUID uuid) {
-        CompletableFuture<Integer> future = new CompletableFuture<>();
-
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_SELECT_OPTIONS_BY_UUID)) {
-                    ps.setString(1, uuid.toString());
-                    ResultSet rs = ps.executeQuery();
-
-                    if (rs.next()) {
-                        future.complete(rs.getInt("options"));
-                    } else {
-                        future.complete(0);
-                    }
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                future.complete(0);
-            }});
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null && p.has(PlayerWriteQueue.OPTIONS))
+            return CompletableFuture.completedFuture(p.options);
 
-        return future;
+        return queryPlayer(PLAYER_SELECT_OPTIONS_BY_UUID, uuid, rs -> rs.getInt("options"), 0);
     }
 
+    @Override
     public void setDiscord(UUID uuid, long id) {
-        // Remove possibly duplicate Discord
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_UPDATE_DISCORD_BY_DISCORD)) {
-                    ps.setLong(1, 0);
-                    ps.setLong(2, id);
-                    ps.executeUpdate();
-                }
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_UPDATE_DISCORD_BY_UUID)) {
-                    ps.setLong(1, id);
-                    ps.setString(2, uuid.toString());
-                    ps.executeUpdate();
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-        });
+        writeQueue.setDiscord(uuid, id);
     }
 
+    @Override
     public CompletableFuture<Long> getDiscord(UUID uuid) {
-        CompletableFuture<Long> future = new CompletableFuture<>();
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null && p.has(PlayerWriteQueue.DISCORD))
+            return CompletableFuture.completedFuture(p.discord);
 
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_SELECT_DISCORD_BY_UUID)) {
-                    ps.setString(1, uuid.toString());
-                    ResultSet rs = ps.executeQuery();
+        return queryPlayer(PLAYER_SELECT_DISCORD_BY_UUID, uuid, rs -> rs.getLong("discord"), 0L);
+    }
 
-                    if (rs.next())
-                        future.complete(rs.getLong("discord"));
-                    else
-                        future.complete(0L);
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                future.complete(null);
+    @Override
+    public void setReddit(UUID uuid, String reddit) {
+        writeQueue.setReddit(uuid, reddit);
+    }
+
+    @Override
+    public CompletableFuture<String> getReddit(UUID uuid) {
+        PlayerWriteQueue.Pending p = writeQueue.getPending(uuid);
+        if (p != null && p.has(PlayerWriteQueue.REDDIT))
+            return CompletableFuture.completedFuture(p.reddit);
+
+        return queryPlayer(PLAYER_SELECT_REDDIT_BY_UUID, uuid, rs -> rs.getString("reddit"), null);
+    }
+
+    @Override
+    public CompletableFuture<Void> addNews(UUID author, String content) {
+        NewsRecord r = new NewsRecord(author, content, System.currentTimeMillis());
+        CompletableFuture<Void> ret = new CompletableFuture<>();
+        // Never block the command thread on a full lane
+        boolean queued = executor.offer(StorageExecutor.Lane.WRITE, () -> {
+            try {
+                writer.write(r);
+                ret.complete(null);
+            } catch (Throwable ex) {
+                ret.completeExceptionally(ex);
             }
         });
-
-        return future;
+        if (!queued)
+            ret.completeExceptionally(new RejectedExecutionException("Database write lane is full"));
+        return ret;
     }
 
-    public void setReddit(UUID uuid, String reddit) {
-        // Remove possibly duplicate Discord
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_UPDATE_REDDIT_BY_UUID)) {
-                    ps.setString(1, reddit);
-                    ps.setString(2, uuid.toString());
-                    ps.executeUpdate();
+    /**
+     * Keyset pagination on ab_news.id, so any page is one index range scan.
+     */
+    @Override
+    public CompletableFuture<List<NewsModule.Entry>> fetchNews(int beforeId, int limit) {
+        return submit(StorageExecutor.Lane.READ, () -> {
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(NEWS_SELECT_ID_AND_TIMESTAMP_AND_UUID_AND_CONTENT_BEFORE_ID)) {
+                ps.setInt(1, beforeId);
+                ps.setInt(2, limit);
+                List<NewsModule.Entry> ret = new ArrayList<>(limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        ret.add(readNews(rs));
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+                return ret;
             }
-        });
+        }).exceptionally(fallback(null));
     }
 
-    public CompletableFuture<String> getReddit(UUID uuid) {
-        CompletableFuture<String> future = new CompletableFuture<>();
+    private static NewsModule.Entry readNews(ResultSet rs) throws SQLException {
+        String author = rs.getString("uuid");
+        return new NewsModule.Entry(
+                rs.getInt("id"),
+                author == null ? null : UUID.fromString(author),
+                rs.getTimestamp("timestamp"),
+                rs.getString("content")
+        );
+    }
 
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection conn = ds.getConnection()) {
-                try (PreparedStatement ps = conn.prepareStatement(PLAYER_SELECT_REDDIT_BY_UUID)) {
-                    ps.setString(1, uuid.toString());
-                    ResultSet rs = ps.executeQuery();
+    private static final class NewsRecord extends JournalRecord {
+        private final UUID author;
+        private final String content;
+        private final long time;
 
-                    if (rs.next())
-                        future.complete(rs.getString("reddit"));
-                    else
-                        future.complete(null);
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                future.complete(null);
+        private NewsRecord(UUID author, String content, long time) {
+            this.author = author;
+            this.content = content;
+            this.time = time;
+        }
+
+        @Override
+        byte getType() {
+            return NEWS;
+        }
+
+        @Override
+        void apply(Connection c) throws SQLException {
+            try (PreparedStatement ps = c.prepareStatement(NEWS_INSERT_NEWS)) {
+                ps.setString(1, content);
+                ps.setString(2, author == null ? null : author.toString());
+                ps.setTimestamp(3, new Timestamp(time));
+                ps.executeUpdate();
             }
-        });
+        }
+
+        @Override
+        void encode(DataOutputStream out) throws IOException {
+            out.writeBoolean(author != null);
+            if (author != null) {
+                out.writeLong(author.getMostSignificantBits());
+                out.writeLong(author.getLeastSignificantBits());
+            }
+            out.writeUTF(content);
+            out.writeLong(time);
+        }
 
-        return future;
+        private static NewsRecord decode(DataInputStream in) throws IOException {
+            UUID author = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            return new NewsRecord(author, in.readUTF(), in.readLong());
+        }
     }
 
-    public void addNews(UUID author, String content) {
-        plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(NEWS_INSERT_NEWS)) {
-                    ps.setString(1, content);
-                    ps.setString(2, author == null ? null : author.toString());
-                    ps.executeUpdate();
+
+    @Override
+    public CompletableFuture<List<ReportDatabase.Report>> fetchOpenReports() {
+        return submit(StorageExecutor.Lane.READ, () -> {
+            Map<Integer, ReportDatabase.Report> ret = new HashMap<>();
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(REPORT_SELECT_OPEN);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ReportDatabase.Report r = readReport(rs);
+                    ret.put(r.getId(), r);
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
             }
-        });
+            // Saves not written yet are newer than what the database has
+            for (ReportDatabase.Report r : reportQueue.getPending().values()) {
+                if (r.isClosed())
+                    ret.remove(r.getId());
+                else
+                    ret.put(r.getId(), r.copy());
+            }
+            List<ReportDatabase.Report> list = new ArrayList<>(ret.values());
+            return list;
+        }).exceptionally(fallback(null));
     }
 
+    @Override
+    public CompletableFuture<ReportDatabase.Report> fetchReport(int id) {
+        ReportDatabase.Report pending = reportQueue.getPending().get(id);
+        if (pending != null)
+            return CompletableFuture.completedFuture(pending.copy());
+
+        return submit(StorageExecutor.Lane.READ, () -> {
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(REPORT_SELECT_BY_ID)) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? readReport(rs) : null;
+                }
+            }
+        }).exceptionally(fallback(null));
+    }
 
-    /*
-     *
-     *
-     * Report Database stuff
-     *
-     *
-     *
-     *
+    /**
+     * Inserts right away rather than through the write queue, so the ID comes from AUTO_INCREMENT
+     * and two proxies sharing the database never hand out the same one.
+     * Fails rather than waits if the write lane is full.
      */
-
-    public void reportUpdatePriority(int id, ReportDatabase.Priority priority) {
-        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            try (Connection c = ds.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(REPORT_UPDATE_LAST_AND_PRIORITY_BY_ID)) {
-                    ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
-                    ps.setInt(2, priority.getValue());
-                    ps.setInt(3, id);
-                    ps.executeUpdate();
+    @Override
+    public CompletableFuture<Integer> insertReport(ReportDatabase.Report report) {
+        return submit(StorageExecutor.Lane.WRITE, () -> {
+            ReportDatabase.Location l = report.getLocation();
+            try (Connection c = db.getConnection();
+                 PreparedStatement ps = c.prepareStatement(REPORT_INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, report.getUser().toString());
+                ps.setString(2, report.getBody());
+                ps.setString(3, l.getServer());
+                ps.setString(4, l.getWorld());
+                ps.setInt(5, l.getX());
+                ps.setInt(6, l.getY());
+                ps.setInt(7, l.getZ());
+                ps.setTimestamp(8, new Timestamp(report.getOpen().getTime()));
+                ps.setTimestamp(9, new Timestamp(report.getLast().getTime()));
+                ps.setInt(10, report.getPriority().getValue());
+                ps.setBoolean(11, report.isClosed());
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next())
+                        throw new SQLException("No ID generated for report");
+                    return rs.getInt(1);
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
             }
-        });
+        }).exceptionally(fallback(null));
+    }
+
+    @Override
+    public void saveReport(ReportDatabase.Report report) {
+        reportQueue.save(report);
+    }
+
+    private static ReportDatabase.Report readReport(ResultSet rs) throws SQLException {
+        return new ReportDatabase.Report(
+                rs.getInt("id"),
+                UUID.fromString(rs.getString("uuid")),
+                new ReportDatabase.Location(rs.getString("server"), rs.getString("world"), rs.getInt("x"), rs.getInt("y"), rs.getInt("z")),
+                rs.getString("body"),
+                rs.getTimestamp("open"),
+                rs.getTimestamp("last"),
+                ReportDatabase.Priority.fromValue(rs.getInt("priority")),
+                rs.getBoolean("closed")
+        );
     }
-}
\ No newline at end of file
+}
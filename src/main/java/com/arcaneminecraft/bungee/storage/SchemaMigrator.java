@@ -0,0 +1,246 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Brings the database schema up to date on startup.
+ * Migrations are applied in version order, each in its own transaction, and recorded in ab_schema_version.
+ * Statements are written to be safe to re-run, since MariaDB commits implicitly on DDL and a migration
+ * interrupted halfway is run again from the start.
+ */
+class SchemaMigrator {
+    private static final String VERSION_CREATE = "CREATE TABLE IF NOT EXISTS ab_schema_version ("
+            + "version INT NOT NULL, description VARCHAR(64) NOT NULL, applied TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (version)"
+            + ") DEFAULT CHARSET = utf8";
+    private static final String VERSION_SELECT_MAX = "SELECT MAX(version) FROM ab_schema_version";
+    private static final String VERSION_INSERT = "INSERT INTO ab_schema_version(version, description) VALUES(?, ?)";
+    // Keeps two proxies starting at once from migrating the same database together
+    private static final String LOCK_GET = "SELECT GET_LOCK('ab_schema_migration', ?)";
+    private static final String LOCK_RELEASE = "SELECT RELEASE_LOCK('ab_schema_migration')";
+    private static final int LOCK_TIMEOUT = 60;
+    private static final String PROCEDURE_SELECT_COMMENT = "SELECT ROUTINE_COMMENT FROM information_schema.ROUTINES "
+            + "WHERE ROUTINE_SCHEMA=DATABASE() AND ROUTINE_TYPE='PROCEDURE' AND ROUTINE_NAME=?";
+    private static final String PROCEDURE_CREATE = "CREATE OR REPLACE PROCEDURE %s(%s) COMMENT '%s'\n%s";
+
+    private static final Migration[] MIGRATIONS = {
+            new Migration(1, "Base tables",
+                    "CREATE TABLE IF NOT EXISTS ab_players ("
+                            + "id INT AUTO_INCREMENT NOT NULL, uuid VARCHAR(36) NOT NULL, username VARCHAR(36) NOT NULL, "
+                            + "firstseen TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, lastseen TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "timezone VARCHAR(32), discord BIGINT NOT NULL DEFAULT 0, options INT NOT NULL DEFAULT 0, PRIMARY KEY (id)"
+                            + ") DEFAULT CHARSET = utf8",
+                    "CREATE INDEX IF NOT EXISTS ab_players_name ON ab_players (username)",
+                    "CREATE TABLE IF NOT EXISTS ab_news ("
+                            + "id INT AUTO_INCREMENT NOT NULL, content VARCHAR(200) NOT NULL, timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "username VARCHAR(36), uuid VARCHAR(36), PRIMARY KEY (id)"
+                            + ") DEFAULT CHARSET = utf8",
+                    "CREATE INDEX IF NOT EXISTS ab_news_timestamp ON ab_news (timestamp)",
+                    // NEWS_INSERT_NEWS never sets it
+                    "ALTER TABLE ab_news MODIFY username VARCHAR(36) NULL"
+            ),
+            // Nothing to do if the text column is already gone, which only happens after this has run
+            new Migration(2, "Binary player UUIDs",
+                    "ALTER TABLE ab_players ADD COLUMN IF NOT EXISTS uuid_bin BINARY(16) NULL AFTER id",
+                    "UPDATE ab_players SET uuid_bin=UNHEX(REPLACE(uuid,'-','')) WHERE uuid_bin IS NULL",
+                    "ALTER TABLE ab_players MODIFY uuid_bin BINARY(16) NOT NULL",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS ab_players_uuid_bin ON ab_players (uuid_bin)"
+            ).onlyIfColumn("ab_players", "uuid"),
+            new Migration(3, "Reddit usernames",
+                    "ALTER TABLE ab_players ADD COLUMN IF NOT EXISTS reddit VARCHAR(32) NULL AFTER discord"
+            ),
+            new Migration(4, "Reports table",
+                    "CREATE TABLE IF NOT EXISTS ab_reports ("
+                            + "id INT AUTO_INCREMENT NOT NULL, uuid VARCHAR(36) NOT NULL, body VARCHAR(1000) NOT NULL, "
+                            + "server VARCHAR(36) NOT NULL, world VARCHAR(64) NOT NULL, x INT NOT NULL, y INT NOT NULL, z INT NOT NULL, "
+                            + "open TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, last TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "priority INT NOT NULL DEFAULT 1, closed BOOLEAN NOT NULL DEFAULT FALSE, PRIMARY KEY (id)"
+                            + ") DEFAULT CHARSET = utf8",
+                    "CREATE INDEX IF NOT EXISTS ab_reports_closed_priority ON ab_reports (closed, priority)"
+            ),
+            // Was an index on ab_players.discord, which 6 drops with the column; kept so versions stay the same
+            new Migration(5, "Discord lookup index"),
+            // Links move to their own table keyed both ways, so relinking is a single REPLACE
+            new Migration(6, "Discord link table",
+                    "CREATE TABLE IF NOT EXISTS ab_discord ("
+                            + "discord BIGINT NOT NULL, uuid_bin BINARY(16) NOT NULL, linked TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "PRIMARY KEY (discord), UNIQUE INDEX ab_discord_uuid_bin (uuid_bin)"
+                            + ") DEFAULT CHARSET = utf8",
+                    "INSERT IGNORE INTO ab_discord(discord, uuid_bin) SELECT discord, uuid_bin FROM ab_players WHERE discord<>0 ORDER BY lastseen DESC",
+                    "ALTER TABLE ab_players DROP COLUMN discord"
+            ).onlyIfColumn("ab_players", "discord"),
+            // Filled by ab_player_join on rename
+            new Migration(7, "Player name history",
+                    "CREATE TABLE IF NOT EXISTS ab_player_names ("
+                            + "uuid_bin BINARY(16) NOT NULL, username VARCHAR(36) NOT NULL, changed TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "PRIMARY KEY (uuid_bin, username), INDEX ab_player_names_username (username)"
+                            + ") DEFAULT CHARSET = utf8"
+            ),
+            new Migration(8, "Last seen index",
+                    // For the directory catch-up after a snapshot, id>? OR lastseen>=?, which otherwise scans every player
+                    "CREATE INDEX IF NOT EXISTS ab_players_lastseen ON ab_players (lastseen)"
+            ),
+    };
+
+    /**
+     * Setup that depends on configuration, such as stored procedures, run after the migrations under the same lock.
+     */
+    interface Setup {
+        void run(Connection c) throws SQLException;
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+        private String guardTable;
+        private String guardColumn;
+
+        private Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        private Migration onlyIfColumn(String table, String column) {
+            this.guardTable = table;
+            this.guardColumn = column;
+            return this;
+        }
+    }
+
+    private final Logger logger;
+
+    SchemaMigrator(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @return the schema version after migrating
+     */
+    int migrate(Connection c) throws SQLException {
+        return migrate(c, null);
+    }
+
+    /**
+     * @param then run after migrating while still holding the lock, or null
+     * @return the schema version after migrating
+     */
+    int migrate(Connection c, Setup then) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute(VERSION_CREATE);
+        }
+
+        lock(c);
+        try {
+            int current = getVersion(c);
+            if (current > latest())
+                logger.warning("Database schema version " + current + " is newer than this plugin knows (" + latest() + ")");
+
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= current)
+                    continue;
+                long start = System.currentTimeMillis();
+                apply(c, m);
+                current = m.version;
+                logger.info("Applied schema migration " + m.version + " (" + m.description + ") in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+            if (then != null)
+                then.run(c);
+            return current;
+        } finally {
+            unlock(c);
+        }
+    }
+
+    static int latest() {
+        return MIGRATIONS[MIGRATIONS.length - 1].version;
+    }
+
+    private static int getVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(VERSION_SELECT_MAX)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void apply(Connection c, Migration m) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            if (m.guardColumn == null || hasColumn(c, m.guardTable, m.guardColumn)) {
+                try (Statement st = c.createStatement()) {
+                    for (String sql : m.statements)
+                        st.execute(sql);
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(VERSION_INSERT)) {
+                ps.setInt(1, m.version);
+                ps.setString(2, m.description);
+                ps.executeUpdate();
+            }
+            c.commit();
+        } catch (SQLException ex) {
+            try {
+                c.rollback();
+            } catch (SQLException ignore) {}
+            throw new SQLException("Schema migration " + m.version + " (" + m.description + ") failed", ex);
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    private static boolean hasColumn(Connection c, String table, String column) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(c.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * @return whether the column exists and does not allow NULL
+     */
+    static boolean isNotNull(Connection c, String table, String column) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(c.getCatalog(), null, table, column)) {
+            return rs.next() && "NO".equals(rs.getString("IS_NULLABLE"));
+        }
+    }
+
+    /**
+     * Creates or replaces a stored procedure, unless the database already has it from the same definition.
+     * A hash of the definition is kept in the procedure's comment to tell.
+     * @return whether the procedure was created or replaced
+     */
+    static boolean replaceProcedure(Connection c, String name, String parameters, String body) throws SQLException {
+        String hash = "ArcaneBungee " + Integer.toHexString((parameters + '\n' + body).hashCode());
+        try (PreparedStatement ps = c.prepareStatement(PROCEDURE_SELECT_COMMENT)) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && hash.equals(rs.getString(1)))
+                    return false;
+            }
+        }
+        try (Statement st = c.createStatement()) {
+            st.execute(String.format(PROCEDURE_CREATE, name, parameters, hash, body));
+        }
+        return true;
+    }
+
+    private static void lock(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(LOCK_GET)) {
+            ps.setInt(1, LOCK_TIMEOUT);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1)
+                    throw new SQLException("Timed out waiting for another server to finish migrating the database");
+            }
+        }
+    }
+
+    private static void unlock(Connection c) {
+        try (Statement st = c.createStatement()) {
+            st.executeQuery(LOCK_RELEASE).close();
+        } catch (SQLException ignore) {}
+    }
+}
@@ -0,0 +1,246 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed-size worker pool for blocking database work.
+ * Workers take from the highest priority lane that has work, except that every
+ * {@value #FAIR_EVERY}th task is the one that has waited longest in any lane,
+ * so a steady stream of logins and reads cannot hold back writes for good.
+ * A task for a full lane is rejected right away; no caller ever waits for room,
+ * since many submit from proxy threads.
+ * Workers come from the given factory, so they may be virtual threads.
+ */
+public class StorageExecutor {
+    public enum Lane {
+        LOGIN, READ, WRITE
+    }
+
+    private static final int FAIR_EVERY = 4;
+
+    private final Logger logger;
+    private final int capacity;
+    private final LaneQueue[] lanes;
+    private final Thread[] workers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean shutdown = false;
+    private int taken = 0;
+
+    StorageExecutor(Logger logger, ThreadFactory factory, int threads, int capacity) {
+        this.logger = logger;
+        this.capacity = capacity;
+        this.lanes = new LaneQueue[Lane.values().length];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = new LaneQueue();
+
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Thread t = factory.newThread(this::work);
+            t.start();
+            workers[i] = t;
+        }
+    }
+
+    /**
+     * Runs a task and returns its result.
+     * The future fails with RejectedExecutionException if the lane is full or the executor is shut down.
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable r = () -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        };
+        try {
+            enqueue(lane, r);
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Runs a task.
+     * @throws RejectedExecutionException if the lane is full or the executor is shut down
+     */
+    public void execute(Lane lane, Runnable task) {
+        enqueue(lane, task);
+    }
+
+    /**
+     * Runs a task if there is room in its lane.
+     * @return false if the task was not queued
+     */
+    public boolean offer(Lane lane, Runnable task) {
+        try {
+            enqueue(lane, task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    private void enqueue(Lane lane, Runnable task) {
+        LaneQueue q = lanes[lane.ordinal()];
+        lock.lock();
+        try {
+            if (shutdown) {
+                q.rejected.incrementAndGet();
+                throw new RejectedExecutionException("Storage executor is shut down");
+            }
+            if (q.queue.size() >= capacity) {
+                q.rejected.incrementAndGet();
+                throw new RejectedExecutionException(lane + " queue is full");
+            }
+            q.queue.add(new Task(task));
+            q.submitted.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Task task = null;
+            LaneQueue from = null;
+            lock.lock();
+            try {
+                while ((from = next()) == null) {
+                    if (shutdown)
+                        return;
+                    notEmpty.awaitUninterruptibly();
+                }
+                task = from.queue.poll();
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            from.waitTime.record(start - task.queued);
+            try {
+                task.runnable.run();
+            } catch (Throwable ex) {
+                logger.log(Level.SEVERE, "Uncaught exception in database task", ex);
+            }
+            from.execTime.record(System.nanoTime() - start);
+            from.completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Picks the lane to take from. Called with the lock held.
+     * @return null if every lane is empty
+     */
+    private LaneQueue next() {
+        LaneQueue first = null;
+        for (LaneQueue q : lanes) {
+            if (!q.queue.isEmpty()) {
+                first = q;
+                break;
+            }
+        }
+        if (first == null || ++taken % FAIR_EVERY != 0)
+            return first;
+
+        LaneQueue oldest = first;
+        for (LaneQueue q : lanes) {
+            Task head = q.queue.peek();
+            if (head != null && head.queued - oldest.queue.peek().queued < 0)
+                oldest = q;
+        }
+        return oldest;
+    }
+
+    /**
+     * Stops accepting tasks and waits for queued tasks to finish.
+     */
+    void shutdown(long timeout, TimeUnit unit) {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread t : workers) {
+            try {
+                t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public int getThreadCount() {
+        return workers.length;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth(Lane lane) {
+        lock.lock();
+        try {
+            return lanes[lane.ordinal()].queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmitted(Lane lane) {
+        return lanes[lane.ordinal()].submitted.get();
+    }
+
+    public long getCompleted(Lane lane) {
+        return lanes[lane.ordinal()].completed.get();
+    }
+
+    public long getRejected(Lane lane) {
+        return lanes[lane.ordinal()].rejected.get();
+    }
+
+    public LatencyHistogram getWaitTime(Lane lane) {
+        return lanes[lane.ordinal()].waitTime;
+    }
+
+    public LatencyHistogram getExecutionTime(Lane lane) {
+        return lanes[lane.ordinal()].execTime;
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        private final long queued = System.nanoTime();
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    private static final class LaneQueue {
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+        private final LatencyHistogram execTime = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,50 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.util.UUID;
+
+/**
+ * Converts UUIDs stored in the database without going through UUID.toString or UUID.fromString.
+ * Binary form is 16 bytes big-endian, most significant bits first, as in ab_players.uuid_bin.
+ */
+public final class UUIDCodec {
+    private UUIDCodec() {}
+
+    public static byte[] toBytes(UUID uuid) {
+        byte[] b = new byte[16];
+        toBytes(uuid, b, 0);
+        return b;
+    }
+
+    public static void toBytes(UUID uuid, byte[] dst, int offset) {
+        writeLong(uuid.getMostSignificantBits(), dst, offset);
+        writeLong(uuid.getLeastSignificantBits(), dst, offset + 8);
+    }
+
+    public static long readMostSignificantBits(byte[] binary) {
+        return readLong(binary, 0);
+    }
+
+    public static long readLeastSignificantBits(byte[] binary) {
+        return readLong(binary, 8);
+    }
+
+    public static UUID fromBytes(byte[] binary) {
+        if (binary.length != 16)
+            throw new IllegalArgumentException("Binary UUID must be 16 bytes, got " + binary.length);
+        return new UUID(readLong(binary, 0), readLong(binary, 8));
+    }
+
+    private static void writeLong(long v, byte[] b, int off) {
+        for (int i = 7; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++)
+            v = v << 8 | (b[off + i] & 0xFF);
+        return v;
+    }
+}
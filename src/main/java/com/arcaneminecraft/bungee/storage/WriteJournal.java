@@ -0,0 +1,155 @@
+package com.arcaneminecraft.bungee.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of database writes that could not be made yet.
+ * Appends are synced to disk in batches by {@link #sync()}, so a crash loses at most one sync interval.
+ * <pre>
+ * int magic "ABWJ", int version
+ * records: int length, int crc32, byte[length] payload
+ * </pre>
+ */
+class WriteJournal {
+    private static final int MAGIC = 0x4142574A;
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final int MAX_RECORD = 1 << 24;
+
+    private final File file;
+    private final Logger logger;
+    private final FileChannel channel;
+    private int records = 0;
+    private boolean dirty = false;
+
+    WriteJournal(File file, Logger logger) throws IOException {
+        this.file = file;
+        this.logger = logger;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() < HEADER) {
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("Not a write journal: " + file);
+            records = readAll().size();
+        }
+        channel.position(channel.size());
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(false);
+        channel.position(HEADER);
+    }
+
+    synchronized void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        records++;
+        dirty = true;
+    }
+
+    /**
+     * Forces appended records to disk if there are any since the last sync.
+     */
+    synchronized void sync() throws IOException {
+        if (!dirty)
+            return;
+        channel.force(false);
+        dirty = false;
+    }
+
+    /**
+     * Reads every complete record in order. A partial record at the end, left by a crash, is cut off.
+     */
+    synchronized List<byte[]> readAll() throws IOException {
+        List<byte[]> ret = new ArrayList<>(records);
+        long size = channel.size();
+        long pos = HEADER;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+
+        while (pos + 8 <= size) {
+            head.clear();
+            channel.read(head, pos);
+            head.flip();
+            int len = head.getInt();
+            int sum = head.getInt();
+            if (len <= 0 || len > MAX_RECORD || pos + 8 + len > size)
+                break;
+
+            byte[] payload = new byte[len];
+            ByteBuffer buf = ByteBuffer.wrap(payload);
+            while (buf.hasRemaining())
+                channel.read(buf, pos + 8 + buf.position());
+            crc.reset();
+            crc.update(payload, 0, len);
+            if ((int) crc.getValue() != sum)
+                break;
+
+            ret.add(payload);
+            pos += 8 + len;
+        }
+
+        if (pos != size) {
+            logger.warning("Write journal " + file.getName() + " ends with a partial record; truncating at byte " + pos);
+            channel.truncate(pos);
+            channel.position(pos);
+        }
+        records = ret.size();
+        return ret;
+    }
+
+    /**
+     * Replaces the journal's records, e.g. with those left after a partial replay.
+     */
+    synchronized void rewrite(List<byte[]> remaining) throws IOException {
+        writeHeader();
+        records = 0;
+        for (byte[] payload : remaining)
+            append(payload);
+        sync();
+    }
+
+    synchronized void clear() throws IOException {
+        writeHeader();
+        records = 0;
+        dirty = false;
+    }
+
+    synchronized boolean isEmpty() {
+        return records == 0;
+    }
+
+    synchronized int size() {
+        return records;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+}
@@ -1,66 +1,175 @@
 package com.arcaneminecraft.bungee.storage.sql;
 
 import com.arcaneminecraft.bungee.ArcaneBungee;
+import com.arcaneminecraft.bungee.storage.ReportStore;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 
+/**
+ * Reports, kept in memory and saved through a {@link ReportStore}.
+ * Open reports are loaded on startup and indexed by priority, then by last update,
+ * so the top of the queue can be listed without asking the store.
+ * If loading fails, it is tried again the next time open reports are asked for.
+ * Closed reports are fetched from the store when asked for, and kept once fetched.
+ * New reports get their ID from the store.
+ */
 public class ReportDatabase {
+    // Highest priority first, then most recently updated, then newest
+    private static final Comparator<Report> ORDER = Comparator
+            .comparingInt((Report r) -> r.priority.getValue()).reversed()
+            .thenComparing((Report r) -> r.last, Comparator.reverseOrder())
+            .thenComparing((Report r) -> r.id, Comparator.reverseOrder());
+
     private final ArcaneBungee plugin;
-    private HashMap<Integer, Report> reports;
-    private int last;
+    private final ReportStore store;
+    private final HashMap<Integer, Report> reports = new HashMap<>();
+    private final TreeSet<Report> open = new TreeSet<>(ORDER);
+    private CompletableFuture<Boolean> loaded;
 
-    public ReportDatabase(ArcaneBungee plugin) {
+    public ReportDatabase(ArcaneBungee plugin, ReportStore store) {
         this.plugin = plugin;
-        // TODO: get all reports from a database
-        // TODO: modify later on to get and store open reports only?
-        // Do we even need to store all the reports? We might change them on future web gui
+        this.store = store;
+        load();
+    }
+
+    /**
+     * Loads open reports, unless they are loaded or loading already.
+     */
+    private synchronized void load() {
+        if (loaded != null) {
+            if (!loaded.isDone())
+                return;
+            if (!loaded.isCompletedExceptionally() && loaded.join())
+                return;
+        }
+
+        loaded = store.fetchOpenReports().thenApply(openReports -> {
+            synchronized (this) {
+                if (openReports == null) {
+                    plugin.getLogger().warning("Could not load open reports; trying again when next asked for");
+                    return false;
+                }
+                for (Report r : openReports) {
+                    // Reports changed here while loading are newer
+                    if (reports.putIfAbsent(r.id, r) == null)
+                        open.add(r);
+                }
+                plugin.getLogger().info("Loaded " + open.size() + " open reports");
+                return true;
+            }
+        });
     }
 
-    public Report getReport(int id) {
-        Report ret = reports.get(id);
-        if (ret == null) {
-            // pull from database
+    /**
+     * @return future of the report, or of null if there is none with this ID
+     */
+    public CompletableFuture<Report> getReport(int id) {
+        synchronized (this) {
+            Report ret = reports.get(id);
+            if (ret != null)
+                return CompletableFuture.completedFuture(ret);
+        }
+        return store.fetchReport(id).thenApply(fetched -> {
+            if (fetched == null)
+                return null;
+            synchronized (this) {
+                // Keep the copy already here if it was changed meanwhile
+                Report ret = reports.putIfAbsent(id, fetched);
+                if (ret != null)
+                    return ret;
+                if (!fetched.closed)
+                    open.add(fetched);
+                return fetched;
+            }
+        });
+    }
+
+    /**
+     * Lists open reports, highest priority and most recently updated first. Does not touch the store.
+     */
+    public synchronized List<Report> getTopOpen(int count) {
+        load();
+        List<Report> ret = new ArrayList<>(Math.min(count, open.size()));
+        for (Report r : open) {
+            if (ret.size() == count)
+                break;
+            ret.add(r);
         }
         return ret;
     }
 
-    public boolean updatePriority(int id, Priority priority) {
-        if (priority == null)
-            return false;
+    public synchronized int getOpenCount() {
+        load();
+        return open.size();
+    }
 
-        Report rep = getReport(id);
-        if (rep == null || rep.closed)
-            return false;
+    /**
+     * @return future of whether the report exists and is open
+     */
+    public CompletableFuture<Boolean> updatePriority(int id, Priority priority) {
+        if (priority == null)
+            return CompletableFuture.completedFuture(false);
 
-        rep.priority = priority;
-        rep.last = new Date();
-        // TODO: Update on SQL server
+        return getReport(id).thenApply(rep -> {
+            synchronized (this) {
+                if (rep == null || rep.closed)
+                    return false;
 
-        return true;
+                open.remove(rep);
+                rep.priority = priority;
+                rep.last = new Date();
+                open.add(rep);
+                store.saveReport(rep);
+                return true;
+            }
+        });
     }
 
-    public boolean updateClosed(int id, boolean closed) {
-        Report rep = getReport(id);
-        if (rep == null)
-            return false;
+    /**
+     * @return future of whether the report exists
+     */
+    public CompletableFuture<Boolean> updateClosed(int id, boolean closed) {
+        return getReport(id).thenApply(rep -> {
+            synchronized (this) {
+                if (rep == null)
+                    return false;
 
-        rep.closed = closed;
-        rep.last = new Date();
-        // TODO: Update on SQL server
-
-        return true;
+                open.remove(rep);
+                rep.closed = closed;
+                rep.last = new Date();
+                if (!closed)
+                    open.add(rep);
+                store.saveReport(rep);
+                return true;
+            }
+        });
     }
 
-    public void newReport(UUID name, String server, String world, int x, int y, int z, String body) {
-        int id = last++;
-        reports.put(id, new Report(id, name, new Location(server, world, x, y, z), body));
-        // TODO: Notify Discord
-        // TODO: Notify admins with permission
+    /**
+     * @return future of the new report, once the store has given it an ID
+     */
+    public CompletableFuture<Report> newReport(UUID name, String server, String world, int x, int y, int z, String body) {
+        Report draft = new Report(0, name, new Location(server, world, x, y, z), body);
+        return store.insertReport(draft).thenApply(id -> {
+            if (id == null)
+                throw new IllegalStateException("Report not saved");
+            Report r = new Report(id, draft.user, draft.location, draft.body, draft.open, draft.last, draft.priority, draft.closed);
+            synchronized (this) {
+                reports.put(id, r);
+                open.add(r);
+                load();
+            }
+            // TODO: Notify Discord
+            return r;
+        }).whenComplete((r, ex) -> {
+            if (ex != null)
+                plugin.getLogger().log(Level.WARNING, "Could not file report", ex);
+        });
     }
 
-    private class Report {
+    public static class Report {
         private final int id;
         private final Date open;
         private final UUID user;
@@ -81,7 +190,10 @@ public class ReportDatabase {
             this.closed = false;
         }
 
-        private Report(int id, UUID user, Location location, String body, Date open, Date last, Priority priority, boolean closed) {
+        /**
+         * For report stores loading saved reports.
+         */
+        public Report(int id, UUID user, Location location, String body, Date open, Date last, Priority priority, boolean closed) {
             this.id = id;
             this.open = open;
             this.last = last;
@@ -91,6 +203,42 @@ public class ReportDatabase {
             this.priority = priority;
             this.closed = closed;
         }
+
+        public Report copy() {
+            return new Report(id, user, location, body, open, last, priority, closed);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Date getOpen() {
+            return open;
+        }
+
+        public UUID getUser() {
+            return user;
+        }
+
+        public Location getLocation() {
+            return location;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public Date getLast() {
+            return last;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
     }
 
     public enum Priority {
@@ -103,21 +251,49 @@ public class ReportDatabase {
         public int getValue() {
             return n;
         }
+
+        public static Priority fromValue(int n) {
+            for (Priority p : values()) {
+                if (p.n == n)
+                    return p;
+            }
+            return NORMAL;
+        }
     }
 
-    public class Location {
+    public static class Location {
         private final String server;
         private final String world;
         private final int x;
         private final int y;
         private final int z;
 
-        private Location(String server, String world, int x, int y, int z) {
+        public Location(String server, String world, int x, int y, int z) {
             this.server = server;
             this.world = world;
             this.x = x;
             this.y = y;
             this.z = z;
         }
+
+        public String getServer() {
+            return server;
+        }
+
+        public String getWorld() {
+            return world;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getZ() {
+            return z;
+        }
     }
 }
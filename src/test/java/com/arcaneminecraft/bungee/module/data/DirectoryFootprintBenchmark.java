@@ -0,0 +1,111 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Heap used by {@link PlayerDirectory} for a number of players, with its search indexes built,
+ * against the two HashMaps it replaced, and how long lookups take in each. Not a unit test; run it on its own with room for both:
+ * <pre>
+ * java -Xmx2g -cp build/classes/java/main:build/classes/java/test \
+ *     com.arcaneminecraft.bungee.module.data.DirectoryFootprintBenchmark [players]
+ * </pre>
+ */
+public class DirectoryFootprintBenchmark {
+    private static final String NAME_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_";
+
+    public static void main(String[] args) throws InterruptedException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+        // As read from the database: two longs and a name per player
+        Random random = new Random(42);
+        long[] msb = new long[players];
+        long[] lsb = new long[players];
+        String[] names = new String[players];
+        for (int i = 0; i < players; i++) {
+            msb[i] = random.nextLong();
+            lsb[i] = random.nextLong();
+            names[i] = name(random, i);
+        }
+
+        long[] maps = maps(msb, lsb, names);
+        long[] dir = directory(msb, lsb, names);
+
+        System.out.printf("%d players%n", players);
+        System.out.printf("HashMaps:        %6.1f MB, %5.1f bytes per player, %4d ns per lookup pair%n",
+                maps[0] / 1e6, (double) maps[0] / players, maps[1]);
+        System.out.printf("PlayerDirectory: %6.1f MB, %5.1f bytes per player, %4d ns per lookup pair (reported footprint %.1f MB)%n",
+                dir[0] / 1e6, (double) dir[0] / players, dir[1], dir[2] / 1e6);
+    }
+
+    /**
+     * @return heap bytes and nanoseconds per lookup pair for the two maps
+     */
+    private static long[] maps(long[] msb, long[] lsb, String[] names) throws InterruptedException {
+        long base = usedHeap();
+        Map<String, UUID> nameToUuid = new HashMap<>();
+        Map<UUID, String> uuidToName = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            UUID uuid = new UUID(msb[i], lsb[i]);
+            String name = new String(names[i].toCharArray());
+            uuidToName.put(uuid, name);
+            nameToUuid.put(name.toLowerCase(), uuid);
+        }
+        long used = usedHeap() - base;
+        return new long[]{used, time(names.length,
+                i -> nameToUuid.get(names[i].toLowerCase()) != null && uuidToName.get(new UUID(msb[i], lsb[i])) != null)};
+    }
+
+    /**
+     * @return heap bytes, nanoseconds per lookup pair and reported footprint for the directory
+     */
+    private static long[] directory(long[] msb, long[] lsb, String[] names) throws InterruptedException {
+        long base = usedHeap();
+        PlayerDirectory directory = new PlayerDirectory();
+        for (int i = 0; i < names.length; i++)
+            directory.put(new UUID(msb[i], lsb[i]), names[i]);
+        // Build the prefix and trigram indexes, as the first tab completion or similar-name search does
+        directory.getNamesStartingWith("a", 1);
+        long used = usedHeap() - base;
+        return new long[]{used, time(names.length,
+                i -> directory.getUUID(names[i]) != null && directory.getName(new UUID(msb[i], lsb[i])) != null),
+                directory.getFootprint()};
+    }
+
+    // Up to 16 characters, made unique by a suffix
+    private static String name(Random random, int i) {
+        StringBuilder b = new StringBuilder();
+        for (int j = 1 + random.nextInt(11); j > 0; j--)
+            b.append(NAME_CHARS.charAt(random.nextInt(NAME_CHARS.length())));
+        return b.append('_').append(Integer.toString(i, 36)).toString();
+    }
+
+    private interface Lookup {
+        boolean test(int i);
+    }
+
+    /**
+     * @return average nanoseconds per call, after one pass to warm up
+     */
+    private static long time(int players, Lookup lookup) {
+        for (int i = 0; i < players; i++) {
+            if (!lookup.test(i))
+                throw new AssertionError("Player " + i + " not found");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++)
+            lookup.test(i);
+        return (System.nanoTime() - start) / players;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
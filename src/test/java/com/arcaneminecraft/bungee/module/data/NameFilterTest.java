@@ -0,0 +1,57 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class NameFilterTest {
+    @Test
+    public void neverForgetsWhatWasAdded() {
+        NameFilter f = new NameFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            f.add("Player" + i);
+            f.add(new UUID(i, ~i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(f.mightContain("Player" + i));
+            assertTrue(f.mightContain(new UUID(i, ~i)));
+        }
+        assertEquals(20000, f.getAdded());
+    }
+
+    @Test
+    public void ignoresCase() {
+        NameFilter f = new NameFilter(100, 0.01);
+        f.add("Notch");
+        assertTrue(f.mightContain("notch"));
+        assertTrue(f.mightContain("NOTCH"));
+    }
+
+    @Test
+    public void keepsNamesAndUUIDsApart() {
+        NameFilter f = new NameFilter(100, 0.001);
+        UUID uuid = new UUID(0x1234, 0x5678);
+        f.add(uuid);
+        assertFalse(f.mightContain(uuid.toString()));
+        assertFalse(f.mightContain(new UUID(0x5678, 0x1234)));
+    }
+
+    @Test
+    public void staysNearTheFalsePositiveRate() {
+        int n = 20000;
+        NameFilter f = new NameFilter(n, 0.01);
+        for (int i = 0; i < n; i++)
+            f.add("member_" + i);
+
+        int wrong = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (f.mightContain("stranger_" + i))
+                wrong++;
+        }
+        double rate = wrong / 100000.0;
+        assertTrue("False positive rate " + rate, rate < 0.02);
+        assertEquals(rate, f.getFalsePositiveRate(), 0.005);
+    }
+}
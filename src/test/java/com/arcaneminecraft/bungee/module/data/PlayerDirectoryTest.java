@@ -0,0 +1,125 @@
+package com.arcaneminecraft.bungee.module.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PlayerDirectoryTest {
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+
+    @Test
+    public void findsBothWaysIgnoringCase() {
+        PlayerDirectory d = new PlayerDirectory();
+        assertNull(d.put(ALICE, "Alice"));
+        assertEquals("Alice", d.getName(ALICE));
+        assertEquals(ALICE, d.getUUID("aLICE"));
+        assertTrue(d.contains(ALICE));
+        assertFalse(d.contains(BOB));
+        assertNull(d.getUUID("Bob"));
+        assertEquals(1, d.size());
+    }
+
+    @Test
+    public void renameFreesTheOldName() {
+        PlayerDirectory d = new PlayerDirectory();
+        d.put(ALICE, "Alice");
+        assertEquals("Alice", d.put(ALICE, "Alicia"));
+        assertEquals("Alicia", d.getName(ALICE));
+        assertEquals(ALICE, d.getUUID("alicia"));
+        assertNull(d.getUUID("Alice"));
+        assertEquals(1, d.size());
+
+        // Same name again changes nothing; a change of case is a rename
+        assertEquals("Alicia", d.put(ALICE, "Alicia"));
+        assertEquals("Alicia", d.put(ALICE, "ALICIA"));
+        assertEquals("ALICIA", d.getName(ALICE));
+        assertEquals(ALICE, d.getUUID("alicia"));
+    }
+
+    @Test
+    public void takenNameMovesToTheNewHolder() {
+        PlayerDirectory d = new PlayerDirectory();
+        d.put(ALICE, "Name");
+        d.put(BOB, "name");
+        assertEquals(BOB, d.getUUID("NAME"));
+        // The old holder keeps their last known name until they are seen again
+        assertEquals("Name", d.getName(ALICE));
+        assertEquals(Collections.singletonList("name"), d.getNamesStartingWith("na", 10));
+
+        d.put(ALICE, "Other");
+        assertEquals(BOB, d.getUUID("name"));
+        assertEquals(ALICE, d.getUUID("other"));
+        assertEquals(Arrays.asList("name", "Other"), d.getNamesStartingWith("", 10));
+    }
+
+    @Test
+    public void removedNamesDoNotBreakProbeRuns() {
+        // Every rename removes a name slot from the middle of probe runs in a small table
+        PlayerDirectory d = new PlayerDirectory(16);
+        for (int i = 0; i < 12; i++)
+            d.put(new UUID(i, i), "player" + i);
+        for (int i = 0; i < 12; i += 2)
+            d.put(new UUID(i, i), "renamed" + i);
+        for (int i = 0; i < 12; i++) {
+            String current = (i % 2 == 0 ? "renamed" : "player") + i;
+            assertEquals(current, new UUID(i, i), d.getUUID(current));
+            if (i % 2 == 0)
+                assertNull(d.getUUID("player" + i));
+        }
+    }
+
+    @Test
+    public void growsPastItsCapacity() {
+        PlayerDirectory d = new PlayerDirectory(16);
+        int n = 20000;
+        for (int i = 0; i < n; i++)
+            d.put(new UUID(i, -i), "p" + i);
+        // Renames leave garbage in the arena, dropped when it grows again
+        for (int i = 0; i < n; i += 3)
+            d.put(new UUID(i, -i), "renamed_" + i);
+        for (int i = n; i < 2 * n; i++)
+            d.put(new UUID(i, -i), "p" + i);
+
+        assertEquals(2 * n, d.size());
+        for (int i = 0; i < 2 * n; i++) {
+            String name = (i < n && i % 3 == 0 ? "renamed_" : "p") + i;
+            assertEquals(name, d.getName(new UUID(i, -i)));
+            assertEquals(name, new UUID(i, -i), d.getUUID(name));
+        }
+    }
+
+    @Test
+    public void keepsIndexesUpToDateAfterTheFirstSearch() {
+        PlayerDirectory d = new PlayerDirectory(16);
+        d.put(ALICE, "Steve");
+        assertEquals(Collections.singletonList("Steve"), d.getNamesStartingWith("st", 10));
+
+        for (int i = 0; i < 100; i++)
+            d.put(new UUID(10, i), "Stone" + i);
+        d.put(ALICE, "Alex");
+        assertEquals(100, d.getNamesStartingWith("ST", 1000).size());
+        assertEquals(Arrays.asList("Stone1", "Stone10"), d.getNamesStartingWith("stone1", 2));
+        assertTrue(d.getNamesStartingWith("steve", 10).isEmpty());
+
+        PlayerDirectory.SearchResult r = d.search("one9", 100, TimeUnit.SECONDS.toNanos(10));
+        assertTrue(r.isComplete());
+        assertEquals(11, r.getMatches().size());
+        assertEquals(Collections.singletonList("Alex"), d.getSimilarNames("alec", 1, 10));
+    }
+
+    @Test
+    public void footprintCountsTheIndexes() {
+        PlayerDirectory d = new PlayerDirectory();
+        for (int i = 0; i < 1000; i++)
+            d.put(new UUID(i, i), "player" + i);
+        long before = d.getFootprint();
+        d.getNamesStartingWith("p", 1);
+        assertTrue(d.getFootprint() > before);
+    }
+}
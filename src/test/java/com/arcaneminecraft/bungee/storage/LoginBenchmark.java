@@ -0,0 +1,78 @@
+package com.arcaneminecraft.bungee.storage;
+
+import com.arcaneminecraft.bungee.BlockingThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Throughput of simulated logins submitted all at once to the LOGIN lane, on platform worker threads
+ * and, on Java 21 or newer, on virtual ones. Each login blocks for a fixed time in place of the
+ * ab_player_join round trip. Runs once with as many workers as the default connection pool,
+ * and once with a worker per login. Not a unit test; run it on its own:
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/test \
+ *     com.arcaneminecraft.bungee.storage.LoginBenchmark [logins] [pool size] [milliseconds per login]
+ * </pre>
+ */
+public class LoginBenchmark {
+    private static final Logger LOGGER = Logger.getLogger("LoginBenchmark");
+
+    public static void main(String[] args) throws InterruptedException {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int pool = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int millis = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        System.out.printf("%d logins of %d ms each, Java %s%n", logins, millis, System.getProperty("java.version"));
+        for (boolean virtual : new boolean[]{false, true}) {
+            BlockingThreads threads = new BlockingThreads(LOGGER, virtual);
+            if (virtual && !threads.isVirtual()) {
+                System.out.println("virtual:  skipped, needs Java 21 or newer");
+                continue;
+            }
+            for (int workers : new int[]{pool, logins}) {
+                run(threads, workers, logins, millis);
+                run(threads, workers, logins, millis);
+            }
+        }
+    }
+
+    private static void run(BlockingThreads threads, int workers, int logins, int millis) throws InterruptedException {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        int threadsBefore = mx.getThreadCount();
+        mx.resetPeakThreadCount();
+
+        StorageExecutor executor = new StorageExecutor(LOGGER, threads.factory("Bench-"), workers, logins);
+        long[] latency = new long[logins];
+        CountDownLatch done = new CountDownLatch(logins);
+        long start = System.nanoTime();
+        for (int i = 0; i < logins; i++) {
+            final int n = i;
+            final long submitted = System.nanoTime();
+            executor.submit(StorageExecutor.Lane.LOGIN, () -> {
+                Thread.sleep(millis);
+                return null;
+            }).whenComplete((v, ex) -> {
+                latency[n] = ex == null ? System.nanoTime() - submitted : Long.MAX_VALUE;
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        int peak = mx.getPeakThreadCount();
+        executor.shutdown(5, TimeUnit.SECONDS);
+
+        Arrays.sort(latency);
+        if (latency[logins - 1] == Long.MAX_VALUE)
+            throw new AssertionError("Some logins failed");
+        System.out.printf("%-8s  %3d workers: %6.0f logins/s, p50 %4d ms, p99 %4d ms, %3d more platform threads at peak%n",
+                threads.isVirtual() ? "virtual:" : "platform:", workers, logins / (elapsed / 1e9),
+                TimeUnit.NANOSECONDS.toMillis(latency[logins / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latency[logins * 99 / 100]),
+                peak - threadsBefore);
+    }
+}
@@ -0,0 +1,189 @@
+package com.arcaneminecraft.bungee.storage;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class SchemaMigratorTest {
+    private static final Logger LOGGER = Logger.getLogger("SchemaMigratorTest");
+
+    @Test
+    public void appliesEveryMigrationInOrderOnAnEmptyDatabase() throws SQLException {
+        FakeDatabase db = new FakeDatabase(0);
+        int version = new SchemaMigrator(LOGGER).migrate(db.connection(), c -> db.log.add("setup"));
+
+        assertEquals(SchemaMigrator.latest(), version);
+        List<Integer> expected = new ArrayList<>();
+        for (int v = 1; v <= SchemaMigrator.latest(); v++)
+            expected.add(v);
+        assertEquals(expected, db.recorded);
+
+        // Under the lock from start to end, with the setup last
+        assertTrue(db.log.get(1).startsWith("SELECT GET_LOCK"));
+        assertEquals("setup", db.log.get(db.log.size() - 2));
+        assertTrue(db.log.get(db.log.size() - 1).startsWith("SELECT RELEASE_LOCK"));
+        assertEquals(db.commits, expected.size());
+    }
+
+    @Test
+    public void appliesOnlyNewerMigrations() throws SQLException {
+        FakeDatabase db = new FakeDatabase(4);
+        new SchemaMigrator(LOGGER).migrate(db.connection());
+
+        assertEquals(5, (int) db.recorded.get(0));
+        assertEquals(SchemaMigrator.latest() - 4, db.recorded.size());
+        for (String sql : db.log)
+            assertFalse(sql, sql.contains("CREATE TABLE IF NOT EXISTS ab_reports"));
+    }
+
+    @Test
+    public void skipsGuardedMigrationsWhenTheColumnIsGone() throws SQLException {
+        FakeDatabase db = new FakeDatabase(1);
+        new SchemaMigrator(LOGGER).migrate(db.connection());
+        assertTrue(db.recorded.contains(2));
+        assertTrue(db.recorded.contains(6));
+        for (String sql : db.log) {
+            assertFalse(sql, sql.contains("uuid_bin=UNHEX"));
+            assertFalse(sql, sql.contains("DROP COLUMN discord"));
+        }
+
+        db = new FakeDatabase(1, "ab_players.uuid", "ab_players.discord");
+        new SchemaMigrator(LOGGER).migrate(db.connection());
+        assertTrue(db.log.stream().anyMatch(sql -> sql.contains("uuid_bin=UNHEX")));
+        assertTrue(db.log.stream().anyMatch(sql -> sql.contains("DROP COLUMN discord")));
+    }
+
+    @Test
+    public void doesNothingWhenUpToDate() throws SQLException {
+        FakeDatabase db = new FakeDatabase(SchemaMigrator.latest());
+        assertEquals(SchemaMigrator.latest(), new SchemaMigrator(LOGGER).migrate(db.connection()));
+        assertTrue(db.recorded.isEmpty());
+    }
+
+    @Test
+    public void stopsAtAFailedMigrationAndReleasesTheLock() {
+        FakeDatabase db = new FakeDatabase(0);
+        db.failOn = "CREATE TABLE IF NOT EXISTS ab_reports";
+        try {
+            new SchemaMigrator(LOGGER).migrate(db.connection());
+            fail();
+        } catch (SQLException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Schema migration 4"));
+        }
+        assertEquals(Arrays.asList(1, 2, 3), db.recorded);
+        assertEquals(1, db.rollbacks);
+        assertTrue(db.log.get(db.log.size() - 1).startsWith("SELECT RELEASE_LOCK"));
+    }
+
+    /**
+     * Just enough of a JDBC connection for the migrator: logs every statement and records versions inserted.
+     */
+    private static class FakeDatabase {
+        private final int version;
+        private final Set<String> columns;
+        private final List<String> log = new ArrayList<>();
+        private final List<Integer> recorded = new ArrayList<>();
+        private String failOn;
+        private int commits = 0;
+        private int rollbacks = 0;
+
+        private FakeDatabase(int version, String... columns) {
+            this.version = version;
+            this.columns = new HashSet<>(Arrays.asList(columns));
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (name, args) -> {
+                switch (name) {
+                    case "createStatement":
+                        return statement(null);
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    case "getMetaData":
+                        return proxy(DatabaseMetaData.class, (n, a) ->
+                                resultSet(columns.contains(a[2] + "." + a[3]) ? 1 : null));
+                    case "commit":
+                        commits++;
+                        return null;
+                    case "rollback":
+                        rollbacks++;
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private Statement statement(String prepared) {
+            int[] param = new int[1];
+            return proxy(PreparedStatement.class, (name, args) -> {
+                switch (name) {
+                    case "setInt":
+                        if ((int) args[0] == 1)
+                            param[0] = (int) args[1];
+                        return null;
+                    case "executeUpdate":
+                        log.add(prepared);
+                        if (prepared.startsWith("INSERT INTO ab_schema_version"))
+                            recorded.add(param[0]);
+                        return 1;
+                    case "execute":
+                        log.add((String) args[0]);
+                        if (failOn != null && ((String) args[0]).startsWith(failOn))
+                            throw new SQLException("Failed");
+                        return false;
+                    case "executeQuery": {
+                        String sql = prepared != null ? prepared : (String) args[0];
+                        log.add(sql);
+                        if (sql.startsWith("SELECT MAX(version)"))
+                            return resultSet(version);
+                        return resultSet(1);
+                    }
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        /**
+         * @return a result set of one row holding the value, or no rows if null
+         */
+        private static ResultSet resultSet(Integer value) {
+            boolean[] read = new boolean[1];
+            return proxy(ResultSet.class, (name, args) -> {
+                switch (name) {
+                    case "next":
+                        if (value == null || read[0])
+                            return false;
+                        return read[0] = true;
+                    case "getInt":
+                        return value;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws SQLException;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> {
+                    if (method.getName().equals("close") || method.getName().equals("setAutoCommit"))
+                        return null;
+                    return handler.invoke(method.getName(), args);
+                }));
+    }
+}
@@ -0,0 +1,136 @@
+package com.arcaneminecraft.bungee.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class WriteJournalTest {
+    private static final Logger LOGGER = Logger.getLogger("WriteJournalTest");
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("journal", ".dat");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void readsBackWhatWasAppended() throws IOException {
+        WriteJournal j = new WriteJournal(file, LOGGER);
+        assertTrue(j.isEmpty());
+        j.append(bytes("one"));
+        j.append(bytes("two"));
+        j.close();
+
+        j = new WriteJournal(file, LOGGER);
+        assertEquals(2, j.size());
+        assertEquals(Arrays.asList("one", "two"), strings(j.readAll()));
+        j.close();
+    }
+
+    @Test
+    public void cutsOffAPartialRecord() throws IOException {
+        WriteJournal j = new WriteJournal(file, LOGGER);
+        j.append(bytes("one"));
+        j.append(bytes("two"));
+        j.close();
+        long full = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(full - 1);
+        }
+
+        j = new WriteJournal(file, LOGGER);
+        assertEquals(Arrays.asList("one"), strings(j.readAll()));
+        // Appends continue where the partial record was
+        j.append(bytes("three"));
+        j.close();
+
+        j = new WriteJournal(file, LOGGER);
+        assertEquals(Arrays.asList("one", "three"), strings(j.readAll()));
+        j.close();
+    }
+
+    @Test
+    public void stopsAtACorruptRecord() throws IOException {
+        WriteJournal j = new WriteJournal(file, LOGGER);
+        j.append(bytes("one"));
+        j.append(bytes("two"));
+        j.append(bytes("three"));
+        j.close();
+        // Flip a byte of the second payload: header 8, record 8 + 3, record header 8
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8 + 11 + 8);
+            raf.write('x');
+        }
+
+        j = new WriteJournal(file, LOGGER);
+        assertEquals(Arrays.asList("one"), strings(j.readAll()));
+        assertEquals(8 + 11, file.length());
+        j.close();
+    }
+
+    @Test
+    public void ignoresAnImpossibleLength() throws IOException {
+        WriteJournal j = new WriteJournal(file, LOGGER);
+        j.append(bytes("one"));
+        j.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length());
+            raf.writeInt(-5);
+            raf.writeInt(0);
+        }
+
+        j = new WriteJournal(file, LOGGER);
+        assertEquals(Arrays.asList("one"), strings(j.readAll()));
+        j.close();
+    }
+
+    @Test
+    public void rewriteAndClearReplaceTheRecords() throws IOException {
+        WriteJournal j = new WriteJournal(file, LOGGER);
+        j.append(bytes("one"));
+        j.append(bytes("two"));
+        j.rewrite(Arrays.asList(bytes("two")));
+        assertEquals(Arrays.asList("two"), strings(j.readAll()));
+        j.clear();
+        assertTrue(j.isEmpty());
+        assertTrue(j.readAll().isEmpty());
+        j.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesAnotherFile() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeLong(0x1234567812345678L);
+        }
+        new WriteJournal(file, LOGGER);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        List<String> ret = new ArrayList<>();
+        for (byte[] r : records)
+            ret.add(new String(r, StandardCharsets.UTF_8));
+        return ret;
+    }
+}